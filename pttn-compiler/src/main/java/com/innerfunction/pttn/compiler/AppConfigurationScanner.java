@@ -0,0 +1,175 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.pttn.compiler;
+
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * A class for scanning an app configuration for the names of the classes it instantiates.
+ * Class names are read from the configuration's type map and from any *and-class property
+ * found within the configuration, or within any JSON file referenced from the configuration
+ * using an app: URI. The scanner also records the data of each configuration file read, keyed
+ * by asset name.
+ */
+class AppConfigurationScanner {
+
+    /** The app: URI scheme prefix used to reference other configuration files. */
+    static final String AppSchemePrefix = "@app:";
+    /** A pattern matching app: URIs which reference a JSON file, with no parameters or format. */
+    static final Pattern JSONFileURI = Pattern.compile("@app:[\\w./-]+\\.json");
+
+    /** The app's assets folder. app: URIs resolve to files within this folder. */
+    private File assetsDir;
+    /** The class names found by the scanner, sorted by name. */
+    private Set<String> classNames = new TreeSet<>();
+    /** The data of the configuration files read by the scanner, keyed by asset name. */
+    private Map<String,Object> documents = new TreeMap<>();
+
+    AppConfigurationScanner(File assetsDir) {
+        this.assetsDir = assetsDir;
+    }
+
+    /**
+     * Scan a configuration file.
+     * @param path  The path of the configuration file, relative to the assets folder.
+     */
+    void scan(String path) throws IOException, ParseException {
+        File configFile = new File( assetsDir, path );
+        Object config = readJSON( configFile );
+        String assetName = getAssetName( configFile );
+        documents.put( assetName, config );
+        if( config instanceof Map ) {
+            Object types = ((Map)config).get("types");
+            // The type map may be declared inline, or in a separate file.
+            if( types instanceof String && ((String)types).startsWith( AppSchemePrefix ) ) {
+                File typesFile = resolveAppURI( (String)types, assetName );
+                types = readJSON( typesFile );
+                documents.put( getAssetName( typesFile ), types );
+            }
+            if( types instanceof Map ) {
+                for( Object className : ((Map)types).values() ) {
+                    if( className instanceof String ) {
+                        classNames.add( (String)className );
+                    }
+                }
+            }
+        }
+        scanValue( config, assetName );
+    }
+
+    /** Get the class names found by the scanner. */
+    Set<String> getClassNames() {
+        return classNames;
+    }
+
+    /** Get the data of the configuration files read by the scanner, keyed by asset name. */
+    Map<String,Object> getDocuments() {
+        return documents;
+    }
+
+    /**
+     * Recursively scan a configuration value for *and-class properties and references to other
+     * configuration files.
+     * @param value         The value to scan.
+     * @param assetName     The asset name of the file containing the value.
+     */
+    private void scanValue(Object value, String assetName) {
+        if( value instanceof Map ) {
+            for( Object entry : ((Map)value).entrySet() ) {
+                Object key = ((Map.Entry)entry).getKey();
+                Object item = ((Map.Entry)entry).getValue();
+                if( "*and-class".equals( key ) && item instanceof String ) {
+                    classNames.add( (String)item );
+                }
+                else {
+                    scanValue( item, assetName );
+                }
+            }
+        }
+        else if( value instanceof List ) {
+            for( Object item : (List)value ) {
+                scanValue( item, assetName );
+            }
+        }
+        else if( value instanceof String && JSONFileURI.matcher( (String)value ).matches() ) {
+            scanFile( resolveAppURI( (String)value, assetName ) );
+        }
+    }
+
+    /**
+     * Scan a referenced configuration file.
+     * Files which have already been read, or which can't be read, are skipped. (Note that the
+     * files are only read here as an optimization, so unreadable files are left to be reported
+     * at runtime).
+     */
+    private void scanFile(File file) {
+        String assetName = getAssetName( file );
+        if( !documents.containsKey( assetName ) && file.isFile() ) {
+            try {
+                Object data = readJSON( file );
+                documents.put( assetName, data );
+                scanValue( data, assetName );
+            }
+            catch(IOException | ParseException e) {
+                // Skip the file.
+            }
+        }
+    }
+
+    /** Get the asset name of a file, i.e. its normalized path relative to the assets folder. */
+    private String getAssetName(File file) {
+        Path assetsPath = assetsDir.toPath().toAbsolutePath().normalize();
+        Path filePath = file.toPath().toAbsolutePath().normalize();
+        return assetsPath.relativize( filePath ).toString().replace( File.separatorChar, '/');
+    }
+
+    /**
+     * Resolve an app: URI reference to a file.
+     * Absolute paths are resolved against the assets folder; relative paths against the folder
+     * of the referencing file.
+     */
+    private File resolveAppURI(String uri, String referencePath) {
+        String path = uri.substring( AppSchemePrefix.length() );
+        if( path.startsWith("/") ) {
+            return new File( assetsDir, path.substring( 1 ) );
+        }
+        File referenceDir = new File( assetsDir, referencePath ).getParentFile();
+        return new File( referenceDir, path );
+    }
+
+    /** Read and parse a JSON file. */
+    private static Object readJSON(File file) throws IOException, ParseException {
+        Reader reader = new InputStreamReader( new FileInputStream( file ), "UTF-8");
+        try {
+            return new JSONParser().parse( reader );
+        }
+        finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.pttn.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * An annotation processor which compiles an app's configuration into Java code.
+ * The processor reads the app configuration (by default, the file at assets/pttn/config.json)
+ * and generates a com.innerfunction.pttn.compiled.PttnCompiledTypes class which instantiates and
+ * configures the classes used by the configuration using direct constructor and setter calls.
+ * The app container uses the generated class in place of reflection when it is available.
+ *
+ * The processor accepts the following options:
+ * - pttn.assets: The path to the app's assets folder. Required; nothing is generated if missing.
+ * - pttn.config: The path to the app configuration, relative to the assets folder. Defaults to
+ *   pttn/config.json.
+ * - pttn.bundle: The path to a generated assets folder. Optional; if specified, then the app
+ *   configuration, and all JSON files it references using app: URIs, are compiled into a
+ *   configuration bundle at pttn/config.bundle under this folder, which the app reads in place
+ *   of the JSON files at runtime (@see com.innerfunction.util.ConfigurationBundle). Any
+ *   previous bundle is deleted before the configuration is compiled, so that a failed
+ *   compilation never leaves a stale bundle in place; and the app ignores bundled documents
+ *   whose source files have changed since the bundle was written.
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions({ CompiledTypesProcessor.AssetsOption, CompiledTypesProcessor.ConfigOption, CompiledTypesProcessor.BundleOption })
+public class CompiledTypesProcessor extends AbstractProcessor {
+
+    static final String AssetsOption = "pttn.assets";
+    static final String ConfigOption = "pttn.config";
+    static final String BundleOption = "pttn.bundle";
+
+    static final String DefaultConfigPath = "pttn/config.json";
+
+    static final String CompiledPackageName = "com.innerfunction.pttn.compiled";
+    static final String CompiledClassName = "PttnCompiledTypes";
+
+    /** A flag indicating that the compiled types class has been generated. */
+    private boolean generated = false;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if( !generated && !roundEnv.processingOver() ) {
+            generated = true;
+            String assetsPath = processingEnv.getOptions().get( AssetsOption );
+            if( assetsPath == null ) {
+                note("%s option not specified, compiled types not generated", AssetsOption );
+                return false;
+            }
+            String configPath = processingEnv.getOptions().get( ConfigOption );
+            if( configPath == null ) {
+                configPath = DefaultConfigPath;
+            }
+            File bundleFile = null;
+            String bundlePath = processingEnv.getOptions().get( BundleOption );
+            if( bundlePath != null ) {
+                bundleFile = new File( bundlePath, ConfigurationBundleWriter.BundleName );
+                if( bundleFile.exists() && !bundleFile.delete() ) {
+                    error("Failed to delete previous configuration bundle %s", bundleFile );
+                    return false;
+                }
+            }
+            try {
+                AppConfigurationScanner scanner = new AppConfigurationScanner( new File( assetsPath ) );
+                scanner.scan( configPath );
+                List<ConfigurableClass> classes = new ArrayList<>();
+                for( String className : scanner.getClassNames() ) {
+                    ConfigurableClass configurableClass = ConfigurableClass.read( className, processingEnv );
+                    if( configurableClass != null ) {
+                        classes.add( configurableClass );
+                    }
+                    else {
+                        note("Class %s not found or not accessible, will use reflection", className );
+                    }
+                }
+                writeCompiledTypes( classes );
+                if( bundleFile != null ) {
+                    writeBundle( scanner, assetsPath, bundleFile );
+                }
+            }
+            catch(Exception e) {
+                processingEnv.getMessager().printMessage( Diagnostic.Kind.WARNING,
+                    String.format("Failed to compile app configuration %s: %s", configPath, e ) );
+            }
+        }
+        // Annotations are never claimed by this processor.
+        return false;
+    }
+
+    /** Write the compiled types class source. */
+    private void writeCompiledTypes(List<ConfigurableClass> classes) throws IOException {
+        String qualifiedName = CompiledPackageName+"."+CompiledClassName;
+        JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile( qualifiedName );
+        PrintWriter out = new PrintWriter( sourceFile.openWriter() );
+        try {
+            out.printf("package %s;\n\n", CompiledPackageName );
+            out.printf("import android.content.Context;\n");
+            out.printf("import android.util.Log;\n\n");
+            out.printf("import com.innerfunction.pttn.Configuration;\n");
+            out.printf("import com.innerfunction.pttn.IOCCompiledTypes;\n");
+            out.printf("import com.innerfunction.pttn.ObjectConfigurer;\n\n");
+            out.printf("/**\n * Compiled app configuration types.\n");
+            out.printf(" * Generated by %s; do not edit.\n */\n", getClass().getName() );
+            out.printf("@SuppressWarnings({ \"rawtypes\", \"unchecked\" })\n");
+            out.printf("public final class %s implements IOCCompiledTypes {\n\n", CompiledClassName );
+            out.printf("    static final String Tag = \"%s\";\n\n", CompiledClassName );
+            // classForName
+            out.printf("    @Override\n");
+            out.printf("    public Class<?> classForName(String className) {\n");
+            out.printf("        switch( className ) {\n");
+            for( ConfigurableClass cc : classes ) {
+                out.printf("        case \"%s\": return %s.class;\n", cc.className, cc.sourceName );
+            }
+            out.printf("        default: return null;\n");
+            out.printf("        }\n");
+            out.printf("    }\n\n");
+            // newInstance
+            out.printf("    @Override\n");
+            out.printf("    public Object newInstance(String className, Context context, Configuration configuration) {\n");
+            out.printf("        switch( className ) {\n");
+            for( ConfigurableClass cc : classes ) {
+                switch( cc.constructor ) {
+                case Context:
+                    out.printf("        case \"%s\": return new %s( context );\n", cc.className, cc.sourceName );
+                    break;
+                case Configuration:
+                    out.printf("        case \"%s\": return new %s( configuration );\n", cc.className, cc.sourceName );
+                    break;
+                case NoArgs:
+                    out.printf("        case \"%s\": return new %s();\n", cc.className, cc.sourceName );
+                    break;
+                default:
+                    // Not instantiable; leave to the reflection based code to report the error.
+                }
+            }
+            out.printf("        default: return null;\n");
+            out.printf("        }\n");
+            out.printf("    }\n\n");
+            // getProperties
+            List<String> propertiesClassNames = new ArrayList<>();
+            out.printf("    @Override\n");
+            out.printf("    public ObjectConfigurer.Properties getProperties(Object object) {\n");
+            out.printf("        switch( object.getClass().getName() ) {\n");
+            for( ConfigurableClass cc : classes ) {
+                // Annotated classes have their own generated properties.
+                if( cc.hasProperties() && !cc.annotated ) {
+                    String propertiesClassName = "Properties"+propertiesClassNames.size();
+                    propertiesClassNames.add( propertiesClassName );
+                    out.printf("        case \"%s\": return new %s( (%s)object );\n",
+                        cc.className, propertiesClassName, cc.sourceName );
+                }
+            }
+            out.printf("        default: return null;\n");
+            out.printf("        }\n");
+            out.printf("    }\n");
+            // Properties classes
+            int idx = 0;
+            for( ConfigurableClass cc : classes ) {
+                if( cc.hasProperties() && !cc.annotated ) {
+                    out.printf("\n");
+                    cc.writePropertiesClass( out, propertiesClassNames.get( idx++ ) );
+                }
+            }
+            out.printf("}\n");
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write the configuration bundle.
+     * Failures are reported as errors, as the app was built expecting to use the bundle.
+     */
+    private void writeBundle(AppConfigurationScanner scanner, String assetsPath, File bundleFile) {
+        try {
+            new ConfigurationBundleWriter( scanner.getDocuments(), new File( assetsPath ) ).write( bundleFile );
+            note("Wrote configuration bundle %s", bundleFile );
+        }
+        catch(IOException e) {
+            error("Failed to write configuration bundle %s: %s", bundleFile, e );
+        }
+    }
+
+    private void error(String format, Object... args) {
+        processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR, String.format( format, args ) );
+    }
+
+    private void note(String format, Object... args) {
+        processingEnv.getMessager().printMessage( Diagnostic.Kind.NOTE, String.format( format, args ) );
+    }
+}
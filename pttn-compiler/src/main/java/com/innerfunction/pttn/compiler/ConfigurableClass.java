@@ -0,0 +1,453 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.pttn.compiler;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+
+/**
+ * Build time type information for a class instantiated or configured by a Pttn container.
+ * Reads the constructor and configurable properties of a class, and writes the source of the
+ * generated code used to instantiate and configure instances of the class without reflection.
+ * Property discovery follows the same rules as the runtime com.innerfunction.util.Property class,
+ * so that the generated code configures the same set of properties as the reflection based code.
+ */
+class ConfigurableClass {
+
+    /** The constructors which may be used to instantiate a class, in order of precedence. */
+    enum Constructor { Context, Configuration, NoArgs, None }
+
+    static final String ContextClassName = "android.content.Context";
+    static final String ConfigurationClassName = "com.innerfunction.pttn.Configuration";
+    static final String IOCConfigurableClassName = "com.innerfunction.pttn.IOCConfigurable";
+
+    /** The class name, as used in the app configuration (i.e. the binary class name). */
+    final String className;
+    /** The class name, as used in Java source. */
+    final String sourceName;
+    /** The constructor used to instantiate the class. */
+    Constructor constructor = Constructor.None;
+    /**
+     * A flag indicating that the class is annotated with @IOCConfigurable, and so has its own
+     * generated properties.
+     */
+    boolean annotated;
+    /**
+     * The class' configurable properties.
+     * Null if the class has properties which can't be configured from the generated code, e.g.
+     * because the property type isn't accessible from outside its package.
+     */
+    List<ConfigurableProperty> properties;
+
+    /**
+     * A configurable property.
+     */
+    static class ConfigurableProperty {
+        /** The property name. */
+        String name;
+        /** The name of the property setter method. */
+        String setter;
+        /** The name of the property getter method. Can be null. */
+        String getter;
+        /** The property type. */
+        TypeMirror type;
+        /** The source name of the property type, e.g. java.lang.String or int. */
+        String typeName;
+        /** The source name of the property's map value type parameter. */
+        String mapValueTypeName;
+    }
+
+    private ConfigurableClass(String className, String sourceName) {
+        this.className = className;
+        this.sourceName = sourceName;
+    }
+
+    /**
+     * Read the build time type information for a class.
+     * @param className The binary name of the class, as used in the app configuration.
+     * @param env       The annotation processing environment.
+     * @return The class information, or null if the class can't be found or isn't accessible
+     * to generated code.
+     */
+    static ConfigurableClass read(String className, ProcessingEnvironment env) {
+        TypeElement typeElement = env.getElementUtils().getTypeElement( className.replace('$', '.') );
+        if( typeElement == null || !isAccessible( typeElement, null ) ) {
+            return null;
+        }
+        return read( className, typeElement, null, env );
+    }
+
+    /**
+     * Read the build time type information for a class.
+     * @param className     The binary name of the class.
+     * @param typeElement   The class type element.
+     * @param fromPackage   The name of the package the generated code is written to. Package
+     *                      private types in this package are accessible to the generated code.
+     *                      Null if only public types are accessible.
+     * @param env           The annotation processing environment.
+     */
+    static ConfigurableClass read(String className, TypeElement typeElement, String fromPackage, ProcessingEnvironment env) {
+        ConfigurableClass result = new ConfigurableClass( className, typeElement.getQualifiedName().toString() );
+        Set<Modifier> modifiers = typeElement.getModifiers();
+        if( typeElement.getKind() == ElementKind.CLASS && !modifiers.contains( Modifier.ABSTRACT ) ) {
+            result.constructor = readConstructor( typeElement, env );
+            result.properties = readProperties( typeElement, fromPackage, env.getTypeUtils() );
+        }
+        for( AnnotationMirror annotation : typeElement.getAnnotationMirrors() ) {
+            if( IOCConfigurableClassName.equals( annotation.getAnnotationType().toString() ) ) {
+                result.annotated = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find the constructor the container would use to instantiate a class.
+     * Returns None if that constructor declares checked exceptions, which the generated code
+     * can't call directly; such classes are instantiated using reflection.
+     */
+    private static Constructor readConstructor(TypeElement typeElement, ProcessingEnvironment env) {
+        Types types = env.getTypeUtils();
+        ExecutableElement contextConstructor = null, configurationConstructor = null, noArgsConstructor = null;
+        for( ExecutableElement constructor : ElementFilter.constructorsIn( typeElement.getEnclosedElements() ) ) {
+            if( !constructor.getModifiers().contains( Modifier.PUBLIC ) ) {
+                continue;
+            }
+            List<? extends TypeMirror> paramTypes = ((ExecutableType)constructor.asType()).getParameterTypes();
+            if( paramTypes.size() == 0 ) {
+                noArgsConstructor = constructor;
+            }
+            else if( paramTypes.size() == 1 ) {
+                String paramTypeName = types.erasure( paramTypes.get( 0 ) ).toString();
+                if( ContextClassName.equals( paramTypeName ) ) {
+                    contextConstructor = constructor;
+                }
+                else if( ConfigurationClassName.equals( paramTypeName ) ) {
+                    configurationConstructor = constructor;
+                }
+            }
+        }
+        if( contextConstructor != null ) {
+            return throwsCheckedException( contextConstructor, env ) ? Constructor.None : Constructor.Context;
+        }
+        if( configurationConstructor != null ) {
+            return throwsCheckedException( configurationConstructor, env ) ? Constructor.None : Constructor.Configuration;
+        }
+        if( noArgsConstructor != null ) {
+            return throwsCheckedException( noArgsConstructor, env ) ? Constructor.None : Constructor.NoArgs;
+        }
+        return Constructor.None;
+    }
+
+    /** Test whether a method or constructor declares any checked exceptions. */
+    private static boolean throwsCheckedException(ExecutableElement executable, ProcessingEnvironment env) {
+        Types types = env.getTypeUtils();
+        TypeMirror runtimeException = env.getElementUtils().getTypeElement("java.lang.RuntimeException").asType();
+        TypeMirror error = env.getElementUtils().getTypeElement("java.lang.Error").asType();
+        for( TypeMirror thrownType : executable.getThrownTypes() ) {
+            if( !types.isSubtype( thrownType, runtimeException ) && !types.isSubtype( thrownType, error ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read a class' configurable properties.
+     * Returns null if any property can't be configured by generated code.
+     */
+    private static List<ConfigurableProperty> readProperties(TypeElement typeElement, String fromPackage, Types types) {
+        // Build a map of all the class' setter & getter methods, and a list of property base names.
+        // Note that, as with the reflection based discovery, setters and getters are read from
+        // the class hierarchy, starting with the class itself; the first declaration found for
+        // a method name is used.
+        Map<String,ExecutableElement> setters = new LinkedHashMap<>();
+        Map<String,ExecutableElement> getters = new HashMap<>();
+        List<String> baseNames = new ArrayList<>();
+        TypeElement hierMember = typeElement;
+        while( hierMember != null ) {
+            for( ExecutableElement method : ElementFilter.methodsIn( hierMember.getEnclosedElements() ) ) {
+                Set<Modifier> modifiers = method.getModifiers();
+                if( !modifiers.contains( Modifier.PUBLIC ) || modifiers.contains( Modifier.STATIC ) ) {
+                    continue;
+                }
+                String methodName = method.getSimpleName().toString();
+                int paramCount = method.getParameters().size();
+                if( paramCount == 1 && methodName.startsWith("set") && methodName.length() > 3 ) {
+                    if( !setters.containsKey( methodName ) ) {
+                        baseNames.add( methodName.substring( 3 ) );
+                        setters.put( methodName, method );
+                    }
+                }
+                else if( paramCount == 0 && (methodName.startsWith("get") || methodName.startsWith("is") || methodName.startsWith("has")) ) {
+                    if( !getters.containsKey( methodName ) ) {
+                        getters.put( methodName, method );
+                    }
+                }
+            }
+            TypeMirror superclass = hierMember.getSuperclass();
+            hierMember = superclass.getKind() == TypeKind.DECLARED
+                ? (TypeElement)((DeclaredType)superclass).asElement()
+                : null;
+        }
+        // Resolve property types against the (raw) class type, so that the generated code uses
+        // the same types as the methods being called.
+        DeclaredType ownerType = (DeclaredType)types.erasure( typeElement.asType() );
+        List<ConfigurableProperty> properties = new ArrayList<>();
+        for( String baseName : baseNames ) {
+            ConfigurableProperty property = new ConfigurableProperty();
+            ExecutableElement setter = setters.get("set"+baseName );
+            ExecutableType setterType = (ExecutableType)types.asMemberOf( ownerType, setter );
+            TypeMirror type = setterType.getParameterTypes().get( 0 );
+            if( !isAccessible( type, fromPackage, types ) ) {
+                return null;
+            }
+            property.name = baseName.substring( 0, 1 ).toLowerCase()+baseName.substring( 1 );
+            property.setter = setter.getSimpleName().toString();
+            property.type = types.erasure( type );
+            property.typeName = property.type.toString();
+            property.mapValueTypeName = readMapValueTypeName( type, fromPackage, types );
+            ExecutableElement getter = getters.get("get"+baseName );
+            if( getter == null && "java.lang.Boolean".equals( property.typeName ) ) {
+                getter = getters.get("is"+baseName );
+                if( getter == null ) {
+                    getter = getters.get("has"+baseName );
+                }
+            }
+            if( getter != null ) {
+                property.getter = getter.getSimpleName().toString();
+            }
+            properties.add( property );
+        }
+        return properties;
+    }
+
+    /**
+     * Read the value type parameter of a map property.
+     * Follows the reflection based rule: the second generic type argument is used if it's a plain
+     * class; otherwise Object is used.
+     */
+    private static String readMapValueTypeName(TypeMirror type, String fromPackage, Types types) {
+        if( type.getKind() == TypeKind.DECLARED ) {
+            List<? extends TypeMirror> typeArgs = ((DeclaredType)type).getTypeArguments();
+            if( typeArgs.size() > 1 ) {
+                TypeMirror valueType = typeArgs.get( 1 );
+                if( valueType.getKind() == TypeKind.DECLARED
+                 && ((DeclaredType)valueType).getTypeArguments().isEmpty()
+                 && isAccessible( valueType, fromPackage, types ) ) {
+                    return types.erasure( valueType ).toString();
+                }
+            }
+        }
+        return "java.lang.Object";
+    }
+
+    /** Test whether a type can be referenced from generated code in a package. */
+    private static boolean isAccessible(TypeMirror type, String fromPackage, Types types) {
+        switch( type.getKind() ) {
+        case ARRAY:
+            return isAccessible( ((ArrayType)type).getComponentType(), fromPackage, types );
+        case DECLARED:
+            return isAccessible( (TypeElement)((DeclaredType)type).asElement(), fromPackage );
+        case TYPEVAR:
+            return isAccessible( types.erasure( type ), fromPackage, types );
+        default:
+            return type.getKind().isPrimitive();
+        }
+    }
+
+    /**
+     * Test whether a class can be referenced from generated code in a package.
+     * @param fromPackage   The generated code's package name, or null if the generated code is
+     *                      in an unrelated package.
+     */
+    static boolean isAccessible(TypeElement typeElement, String fromPackage) {
+        Set<Modifier> modifiers = typeElement.getModifiers();
+        boolean accessible = modifiers.contains( Modifier.PUBLIC );
+        if( !accessible && fromPackage != null && !modifiers.contains( Modifier.PRIVATE ) ) {
+            accessible = fromPackage.equals( getPackageName( typeElement ) );
+        }
+        if( !accessible ) {
+            return false;
+        }
+        if( typeElement.getNestingKind() == NestingKind.MEMBER ) {
+            Element enclosing = typeElement.getEnclosingElement();
+            return modifiers.contains( Modifier.STATIC )
+                && isAccessible( (TypeElement)enclosing, fromPackage );
+        }
+        return typeElement.getNestingKind() == NestingKind.TOP_LEVEL;
+    }
+
+    /** Get the name of the package containing a class. */
+    static String getPackageName(TypeElement typeElement) {
+        Element element = typeElement;
+        while( element.getKind() != ElementKind.PACKAGE ) {
+            element = element.getEnclosingElement();
+        }
+        return ((PackageElement)element).getQualifiedName().toString();
+    }
+
+    /** Test whether instances of the class can be configured by generated code. */
+    boolean hasProperties() {
+        return properties != null;
+    }
+
+    /**
+     * Write the source of an ObjectConfigurer.PrimitiveProperties implementation for the class.
+     * @param out       The source writer.
+     * @param name      The simple name of the generated class.
+     */
+    void writePropertiesClass(PrintWriter out, String name) {
+        out.printf("    static final class %s implements ObjectConfigurer.PrimitiveProperties {\n", name );
+        out.printf("        private final %s object;\n", sourceName );
+        out.printf("        %s(%s object) {\n", name, sourceName );
+        out.printf("            this.object = object;\n");
+        out.printf("        }\n");
+        out.printf("        @Override\n");
+        out.printf("        public Object getPropertyOwner() {\n");
+        out.printf("            return object;\n");
+        out.printf("        }\n");
+        out.printf("        @Override\n");
+        out.printf("        public Class<?> getPropertyType(String name) {\n");
+        out.printf("            switch( name ) {\n");
+        for( ConfigurableProperty property : properties ) {
+            out.printf("            case \"%s\": return %s.class;\n", property.name, property.typeName );
+        }
+        out.printf("            default: return null;\n");
+        out.printf("            }\n");
+        out.printf("        }\n");
+        out.printf("        @Override\n");
+        out.printf("        public Class<?> getMapPropertyValueTypeParameter(String name) {\n");
+        out.printf("            switch( name ) {\n");
+        for( ConfigurableProperty property : properties ) {
+            if( !"java.lang.Object".equals( property.mapValueTypeName ) ) {
+                out.printf("            case \"%s\": return %s.class;\n", property.name, property.mapValueTypeName );
+            }
+        }
+        out.printf("            default: return Object.class;\n");
+        out.printf("            }\n");
+        out.printf("        }\n");
+        out.printf("        @Override\n");
+        out.printf("        public Object getPropertyValue(String name) {\n");
+        out.printf("            try {\n");
+        out.printf("                switch( name ) {\n");
+        for( ConfigurableProperty property : properties ) {
+            if( property.getter != null ) {
+                out.printf("                case \"%s\": return object.%s();\n", property.name, property.getter );
+            }
+        }
+        out.printf("                default: return null;\n");
+        out.printf("                }\n");
+        out.printf("            }\n");
+        // Note that Exception is caught, as property methods may declare checked exceptions.
+        out.printf("            catch(Exception e) {\n");
+        out.printf("                // Unable to get value.\n");
+        out.printf("                return null;\n");
+        out.printf("            }\n");
+        out.printf("        }\n");
+        out.printf("        @Override\n");
+        out.printf("        public boolean setPropertyValue(String name, Object value) {\n");
+        out.printf("            try {\n");
+        out.printf("                switch( name ) {\n");
+        for( ConfigurableProperty property : properties ) {
+            out.printf("                case \"%s\": object.%s( %s ); return true;\n",
+                property.name, property.setter, castValue( property.type, "value") );
+        }
+        out.printf("                default: return false;\n");
+        out.printf("                }\n");
+        out.printf("            }\n");
+        out.printf("            catch(Exception e) {\n");
+        out.printf("                // Unable to set value.\n");
+        out.printf("                Log.e(Tag, String.format(\"Setting %%s\", name ), e );\n");
+        out.printf("            }\n");
+        out.printf("            return false;\n");
+        out.printf("        }\n");
+        writePrimitiveSetter( out, "setIntPropertyValue", TypeKind.INT );
+        writePrimitiveSetter( out, "setLongPropertyValue", TypeKind.LONG );
+        writePrimitiveSetter( out, "setFloatPropertyValue", TypeKind.FLOAT );
+        writePrimitiveSetter( out, "setDoublePropertyValue", TypeKind.DOUBLE );
+        writePrimitiveSetter( out, "setBooleanPropertyValue", TypeKind.BOOLEAN );
+        out.printf("    }\n");
+    }
+
+    /**
+     * Write a primitive property setter method of a properties class.
+     * The method passes its primitive value argument directly to the setter of any property of
+     * the same primitive type.
+     */
+    private void writePrimitiveSetter(PrintWriter out, String methodName, TypeKind kind) {
+        String typeName = kind.name().toLowerCase();
+        out.printf("        @Override\n");
+        out.printf("        public boolean %s(String name, %s value) {\n", methodName, typeName );
+        out.printf("            try {\n");
+        out.printf("                switch( name ) {\n");
+        for( ConfigurableProperty property : properties ) {
+            if( property.type.getKind() == kind ) {
+                out.printf("                case \"%s\": object.%s( value ); return true;\n", property.name, property.setter );
+            }
+        }
+        out.printf("                default: return false;\n");
+        out.printf("                }\n");
+        out.printf("            }\n");
+        out.printf("            catch(Exception e) {\n");
+        out.printf("                // Unable to set value.\n");
+        out.printf("                Log.e(Tag, String.format(\"Setting %%s\", name ), e );\n");
+        out.printf("            }\n");
+        out.printf("            return false;\n");
+        out.printf("        }\n");
+    }
+
+    /**
+     * Generate an expression casting an object value to a property type.
+     * Primitive number values are converted from any Number instance, matching the widening
+     * conversions performed by Method.invoke(..).
+     */
+    static String castValue(TypeMirror type, String value) {
+        switch( type.getKind() ) {
+        case BOOLEAN:   return String.format("(Boolean)%s", value );
+        case CHAR:      return String.format("(Character)%s", value );
+        case BYTE:      return String.format("((Number)%s).byteValue()", value );
+        case SHORT:     return String.format("((Number)%s).shortValue()", value );
+        case INT:       return String.format("((Number)%s).intValue()", value );
+        case LONG:      return String.format("((Number)%s).longValue()", value );
+        case FLOAT:     return String.format("((Number)%s).floatValue()", value );
+        case DOUBLE:    return String.format("((Number)%s).doubleValue()", value );
+        default:
+            String typeName = type.toString();
+            return "java.lang.Object".equals( typeName ) ? value : String.format("(%s)%s", typeName, value );
+        }
+    }
+}
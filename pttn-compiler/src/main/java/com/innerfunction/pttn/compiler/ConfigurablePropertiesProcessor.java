@@ -0,0 +1,117 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.pttn.compiler;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * An annotation processor which generates the configurable properties of @IOCConfigurable classes.
+ * For each annotated class, a [ClassName]_IOCProperties class is generated in the same package
+ * as the annotated class. The generated class implements ObjectConfigurer.PropertiesFactory and
+ * provides an ObjectConfigurer.Properties implementation which uses switch-on-name dispatch and
+ * direct, typed setter and getter calls.
+ */
+@SupportedAnnotationTypes(ConfigurableClass.IOCConfigurableClassName)
+public class ConfigurablePropertiesProcessor extends AbstractProcessor {
+
+    /** The suffix appended to the annotated class name to give the generated class name. */
+    static final String GeneratedClassSuffix = "_IOCProperties";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for( TypeElement annotation : annotations ) {
+            for( Element element : roundEnv.getElementsAnnotatedWith( annotation ) ) {
+                if( element.getKind() != ElementKind.CLASS ) {
+                    error( element, "@IOCConfigurable can only be applied to classes");
+                    continue;
+                }
+                TypeElement typeElement = (TypeElement)element;
+                String packageName = ConfigurableClass.getPackageName( typeElement );
+                if( !ConfigurableClass.isAccessible( typeElement, packageName ) ) {
+                    error( element, "@IOCConfigurable class %s must be accessible within its package", typeElement );
+                    continue;
+                }
+                String className = processingEnv.getElementUtils().getBinaryName( typeElement ).toString();
+                ConfigurableClass configurableClass = ConfigurableClass.read( className, typeElement, packageName, processingEnv );
+                if( !configurableClass.hasProperties() ) {
+                    error( element, "@IOCConfigurable class %s must be a concrete class whose property types are accessible within its package", typeElement );
+                    continue;
+                }
+                try {
+                    writePropertiesFactory( configurableClass, packageName );
+                }
+                catch(IOException e) {
+                    error( element, "Failed to write generated properties for %s: %s", typeElement, e );
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Write the properties factory class source for an annotated class. */
+    private void writePropertiesFactory(ConfigurableClass cc, String packageName) throws IOException {
+        // e.g. com.example.Outer$Inner -> Outer_Inner_IOCProperties
+        String binaryName = cc.className;
+        if( packageName.length() > 0 ) {
+            binaryName = binaryName.substring( packageName.length() + 1 );
+        }
+        String factoryName = binaryName.replace('$', '_')+GeneratedClassSuffix;
+        String propertiesName = binaryName.replace("$", "")+"Properties";
+        String qualifiedName = packageName.length() > 0 ? packageName+"."+factoryName : factoryName;
+        JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile( qualifiedName );
+        PrintWriter out = new PrintWriter( sourceFile.openWriter() );
+        try {
+            if( packageName.length() > 0 ) {
+                out.printf("package %s;\n\n", packageName );
+            }
+            out.printf("import android.util.Log;\n\n");
+            out.printf("import com.innerfunction.pttn.ObjectConfigurer;\n\n");
+            out.printf("/**\n * Configurable properties of %s.\n", cc.sourceName );
+            out.printf(" * Generated by %s; do not edit.\n */\n", getClass().getName() );
+            out.printf("@SuppressWarnings({ \"rawtypes\", \"unchecked\" })\n");
+            out.printf("public final class %s implements ObjectConfigurer.PropertiesFactory {\n\n", factoryName );
+            out.printf("    static final String Tag = \"%s\";\n\n", factoryName );
+            out.printf("    @Override\n");
+            out.printf("    public ObjectConfigurer.Properties getProperties(Object object) {\n");
+            out.printf("        return new %s( (%s)object );\n", propertiesName, cc.sourceName );
+            out.printf("    }\n\n");
+            cc.writePropertiesClass( out, propertiesName );
+            out.printf("}\n");
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    private void error(Element element, String format, Object... args) {
+        processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR, String.format( format, args ), element );
+    }
+}
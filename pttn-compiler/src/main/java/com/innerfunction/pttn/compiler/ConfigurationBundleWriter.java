@@ -0,0 +1,247 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.pttn.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * A class for writing a compiled configuration bundle.
+ * The bundle contains the data of a set of JSON configuration files, keyed by asset name, in
+ * the binary format read by com.innerfunction.util.ConfigurationBundle; see that class for a
+ * description of the format. The length and checksum of each document's source file are
+ * recorded in the bundle, so that the app can detect and ignore documents which have changed
+ * since the bundle was written. (Note that the format constants below must be kept in step with
+ * those in ConfigurationBundle).
+ */
+class ConfigurationBundleWriter {
+
+    /** The name of the bundle asset, relative to the assets folder. */
+    static final String BundleName = "pttn/config.bundle";
+
+    static final int Magic = 0x50544E42;
+    static final int Version = 2;
+    static final int HeaderSize = 24;
+
+    static final byte NullTag = 0;
+    static final byte FalseTag = 1;
+    static final byte TrueTag = 2;
+    static final byte LongTag = 3;
+    static final byte DoubleTag = 4;
+    static final byte StringTag = 5;
+    static final byte ObjectTag = 6;
+    static final byte ArrayTag = 7;
+
+    /** The documents to write, keyed by asset name. */
+    private Map<String,Object> documents;
+    /** The app's assets folder, containing the documents' source files. */
+    private File assetsDir;
+    /** The bundle's string table; maps each string to its index. */
+    private Map<String,Integer> stringIndexes = new HashMap<>();
+    /** The offsets of previously written scalar values, keyed by value. */
+    private Map<Object,Integer> scalarOffsets = new HashMap<>();
+    /** The offset of the previously written null value; -1 if not written. */
+    private int nullOffset = -1;
+    /** The bundle data. */
+    private ByteArrayOutputStream bytes;
+    private DataOutputStream out;
+
+    ConfigurationBundleWriter(Map<String,Object> documents, File assetsDir) {
+        this.documents = documents;
+        this.assetsDir = assetsDir;
+    }
+
+    /**
+     * Write the bundle to a file.
+     * The bundle is written to a temporary file which then replaces the bundle file, so that a
+     * failed write never leaves a partial bundle in place.
+     */
+    void write(File file) throws IOException {
+        File dir = file.getParentFile();
+        if( dir != null && !dir.isDirectory() && !dir.mkdirs() ) {
+            throw new IOException( String.format("Unable to create directory %s", dir ) );
+        }
+        byte[] data = toByteArray();
+        File tempFile = new File( file.getPath()+".tmp");
+        OutputStream fout = new FileOutputStream( tempFile );
+        try {
+            fout.write( data );
+        }
+        finally {
+            fout.close();
+        }
+        Files.move( tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+    }
+
+    /** Generate the bundle data. */
+    byte[] toByteArray() throws IOException {
+        bytes = new ByteArrayOutputStream();
+        out = new DataOutputStream( bytes );
+        out.write( new byte[HeaderSize] );
+        // Build the string table. Strings are sorted so that map keys can be binary searched.
+        TreeSet<String> strings = new TreeSet<>( documents.keySet() );
+        for( Object document : documents.values() ) {
+            collectStrings( document, strings );
+        }
+        List<Integer> stringOffsets = new ArrayList<>( strings.size() );
+        for( String string : strings ) {
+            stringIndexes.put( string, stringIndexes.size() );
+            stringOffsets.add( out.size() );
+            byte[] utf8 = string.getBytes("UTF-8");
+            out.writeInt( utf8.length );
+            out.write( utf8 );
+        }
+        int stringTableOffset = out.size();
+        for( int offset : stringOffsets ) {
+            out.writeInt( offset );
+        }
+        // Write the documents, and then the document table (documents are sorted by name).
+        List<int[]> documentEntries = new ArrayList<>();
+        for( String name : documents.keySet() ) {
+            int offset = writeValue( documents.get( name ) );
+            byte[] source = Files.readAllBytes( new File( assetsDir, name ).toPath() );
+            CRC32 crc = new CRC32();
+            crc.update( source );
+            documentEntries.add( new int[]{ stringIndexes.get( name ), offset, source.length, (int)crc.getValue() } );
+        }
+        int documentTableOffset = out.size();
+        for( int[] entry : documentEntries ) {
+            out.writeInt( entry[0] );
+            out.writeInt( entry[1] );
+            out.writeInt( entry[2] );
+            out.writeInt( entry[3] );
+        }
+        out.flush();
+        byte[] result = bytes.toByteArray();
+        ByteBuffer.wrap( result )
+            .putInt( Magic )
+            .putInt( Version )
+            .putInt( strings.size() )
+            .putInt( stringTableOffset )
+            .putInt( documentEntries.size() )
+            .putInt( documentTableOffset );
+        return result;
+    }
+
+    /** Recursively collect the map keys and string values in a value. */
+    private void collectStrings(Object value, TreeSet<String> strings) {
+        if( value instanceof Map ) {
+            for( Map.Entry<?,?> entry : ((Map<?,?>)value).entrySet() ) {
+                strings.add( (String)entry.getKey() );
+                collectStrings( entry.getValue(), strings );
+            }
+        }
+        else if( value instanceof List ) {
+            for( Object item : (List<?>)value ) {
+                collectStrings( item, strings );
+            }
+        }
+        else if( value instanceof String ) {
+            strings.add( (String)value );
+        }
+    }
+
+    /**
+     * Write a value.
+     * Object and array values are written after their members, so that member offsets are known.
+     * @return The offset of the written value.
+     */
+    private int writeValue(Object value) throws IOException {
+        if( value instanceof Map ) {
+            Map<?,?> map = (Map<?,?>)value;
+            // Sort entries by key index, i.e. by key.
+            int[][] entries = new int[map.size()][];
+            int i = 0;
+            for( Map.Entry<?,?> entry : map.entrySet() ) {
+                int keyIndex = stringIndexes.get( (String)entry.getKey() );
+                entries[i++] = new int[]{ keyIndex, writeValue( entry.getValue() ) };
+            }
+            Arrays.sort( entries, new Comparator<int[]>() {
+                @Override
+                public int compare(int[] e1, int[] e2) {
+                    return Integer.compare( e1[0], e2[0] );
+                }
+            });
+            int offset = out.size();
+            out.writeByte( ObjectTag );
+            out.writeInt( entries.length );
+            for( int[] entry : entries ) {
+                out.writeInt( entry[0] );
+                out.writeInt( entry[1] );
+            }
+            return offset;
+        }
+        if( value instanceof List ) {
+            List<?> list = (List<?>)value;
+            int[] items = new int[list.size()];
+            for( int i = 0; i < items.length; i++ ) {
+                items[i] = writeValue( list.get( i ) );
+            }
+            int offset = out.size();
+            out.writeByte( ArrayTag );
+            out.writeInt( items.length );
+            for( int item : items ) {
+                out.writeInt( item );
+            }
+            return offset;
+        }
+        if( value == null ) {
+            if( nullOffset < 0 ) {
+                nullOffset = out.size();
+                out.writeByte( NullTag );
+            }
+            return nullOffset;
+        }
+        // Scalar values are only written once.
+        Integer offset = scalarOffsets.get( value );
+        if( offset == null ) {
+            offset = out.size();
+            if( value instanceof Boolean ) {
+                out.writeByte( (Boolean)value ? TrueTag : FalseTag );
+            }
+            else if( value instanceof Double || value instanceof Float ) {
+                out.writeByte( DoubleTag );
+                out.writeDouble( ((Number)value).doubleValue() );
+            }
+            else if( value instanceof Number ) {
+                out.writeByte( LongTag );
+                out.writeLong( ((Number)value).longValue() );
+            }
+            else if( value instanceof String ) {
+                out.writeByte( StringTag );
+                out.writeInt( stringIndexes.get( value ) );
+            }
+            else {
+                throw new IOException( String.format("Unsupported configuration value type %s", value.getClass() ) );
+            }
+            scalarOffsets.put( value, offset );
+        }
+        return offset;
+    }
+}
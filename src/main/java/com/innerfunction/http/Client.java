@@ -233,7 +233,7 @@ public class Client {
     }
 
     /** Make a HTTP query string using the values in the specified map. */
-    static String makeQueryString(Map<String,Object> params) {
+    public static String makeQueryString(Map<String,Object> params) {
         if( params == null ) {
             return "";
         }
@@ -25,6 +25,7 @@ import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -48,12 +49,15 @@ public class Response {
     private byte[] body;
     /** A file containing the response. */
     private File dataFile;
+    /** The response headers. */
+    private Map<String,List<String>> headers;
 
     Response(URL url, HttpURLConnection connection, byte[] body) throws IOException {
         this.url = url.toString();
         this.statusCode = connection.getResponseCode();
         this.contentEncoding = readContentEncoding( connection );
         this.contentType = connection.getContentType();
+        this.headers = connection.getHeaderFields();
         this.body = body;
     }
 
@@ -62,6 +66,7 @@ public class Response {
         this.statusCode = connection.getResponseCode();
         this.contentEncoding = connection.getContentEncoding();
         this.contentType = connection.getContentType();
+        this.headers = connection.getHeaderFields();
         this.dataFile = dataFile;
     }
 
@@ -86,6 +91,25 @@ public class Response {
         return contentType;
     }
 
+    /**
+     * Get a response header value.
+     * Header names are matched case insensitively.
+     * @param name  The header name.
+     * @return The first value of the named header, or null if the header isn't in the response.
+     */
+    public String getHeader(String name) {
+        if( headers != null ) {
+            for( Map.Entry<String,List<String>> entry : headers.entrySet() ) {
+                String key = entry.getKey();
+                List<String> values = entry.getValue();
+                if( key != null && key.equalsIgnoreCase( name ) && values != null && values.size() > 0 ) {
+                    return values.get( 0 );
+                }
+            }
+        }
+        return null;
+    }
+
     public File getDataFile() {
         return dataFile;
     }
@@ -15,15 +15,16 @@ package com.innerfunction.pttn;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import android.annotation.SuppressLint;
+import android.util.LruCache;
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
@@ -32,20 +33,47 @@ import com.innerfunction.uri.Resource;
 import com.innerfunction.uri.URIHandler;
 import com.innerfunction.util.KeyPath;
 import com.innerfunction.util.Maps;
+import com.innerfunction.util.PersistentMap;
 import com.innerfunction.util.StringTemplate;
 import com.innerfunction.util.TypeConversions;
 
 /**
  * A class used to parse and access component configurations.
+ *
+ * Note on the primitive getters (getValueAsInt(), getValueAsBool() etc.): numbers and booleans
+ * held in the configuration data are returned without allocating a boxed result. Other values
+ * are converted as by getValueAsNumber() and getValueAsBoolean(), so string values are still
+ * parsed, and resource values are still read through the resource's boxed representation.
+ * Missing or unconvertible values are returned as the default value.
  */
 public class Configuration {
 
     static final String Tag = Configuration.class.getSimpleName();
 
+    /** The maximum number of value configurations memoized by each configuration. */
+    static final int ValueConfigurationsCacheSize = 50;
+
     /** Supported configuration data representations. */
     public enum Representation { Raw, String, Number, Boolean, Date, Image, URL, Resource, Data, JSONData, Configuration }
 
-    /** The configuration data. */
+    /**
+     * The type conversion representation ID of each configuration data representation, indexed
+     * by the representation's ordinal.
+     */
+    private static final int[] ConversionRepresentations = new int[Representation.values().length];
+
+    static {
+        for( Representation representation : Representation.values() ) {
+            ConversionRepresentations[representation.ordinal()] = TypeConversions.getRepresentation( representation.toString() );
+        }
+    }
+
+    /**
+     * The configuration data.
+     * Map data is held in an immutable persistent map, which allows derived configurations (e.g.
+     * mixins, extensions and configurations with keys excluded) to share the data of the
+     * configurations they are derived from, instead of copying it.
+     */
     private Map<String,Object> data;
     /** The original data which the configuration data was derived from. */
     private Object sourceData;
@@ -69,6 +97,77 @@ public class Configuration {
     private Resources r;
     /** Functions for converting between types. */
     private TypeConversions conversions;
+    /** The memoized result of normalize(). */
+    private volatile Memo normalized;
+    /** The memoized result of flatten(). */
+    private volatile Memo flattened;
+    /**
+     * Normalized configurations created from this configuration's values by asConfiguration(),
+     * keyed by the identity of the source value. Only values read directly from the configuration
+     * data are memoized, as other values (e.g. the results of URI dereferences) may be new
+     * instances each time they are read. Created when first needed.
+     */
+    private LruCache<ValueKey,Memo> valueConfigurations;
+
+    /** Normalization cache metrics: Number of results returned from the cache. */
+    private static final AtomicInteger NormalizationCacheHits = new AtomicInteger( 0 );
+    /** Normalization cache metrics: Number of results which had to be computed. */
+    private static final AtomicInteger NormalizationCacheMisses = new AtomicInteger( 0 );
+
+    /**
+     * A memoized configuration derived from a source configuration (e.g. by normalizing it).
+     * The result of a derivation depends on the source configuration's data, and also on the
+     * context, URI handler and root used to resolve the data's values; the memo is only valid
+     * while the source's data, context, URI handler and root are unchanged. (Note that the data
+     * is immutable, so is only changed by replacing it, e.g. by calling setData()).
+     */
+    static final class Memo {
+        final Configuration result;
+        final Map<String,Object> data;
+        final Map<String,Object> context;
+        final URIHandler uriHandler;
+        final Configuration root;
+
+        Memo(Configuration source, Configuration result) {
+            this.result = result;
+            this.data = source.data;
+            this.context = source.context;
+            this.uriHandler = source.uriHandler;
+            this.root = source.root;
+        }
+        /** Test whether the memo is valid for a source configuration. */
+        boolean isValidFor(Configuration source) {
+            return data == source.data && context == source.context && uriHandler == source.uriHandler && root == source.root;
+        }
+        /** Return the memoized result, if valid for the source; otherwise null. */
+        static Configuration resultFor(Memo memo, Configuration source) {
+            if( memo != null && memo.isValidFor( source ) ) {
+                NormalizationCacheHits.incrementAndGet();
+                return memo.result;
+            }
+            NormalizationCacheMisses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * A value configuration cache key. Compares values by identity.
+     */
+    static final class ValueKey {
+        final Object value;
+
+        ValueKey(Object value) {
+            this.value = value;
+        }
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ValueKey && ((ValueKey)obj).value == value;
+        }
+        @Override
+        public int hashCode() {
+            return System.identityHashCode( value );
+        }
+    }
 
     /**
      * Root configuration constructor.
@@ -145,9 +244,20 @@ public class Configuration {
         this.androidContext = parent.androidContext;
         this.root = parent.root;
         this.sourceData = parent.sourceData;
-        this.data = Maps.mixin( config.data, mixin.data );
-        this.context = Maps.mixin( config.context, mixin.context );
-        initialize();
+        this.data = PersistentMap.from( config.data ).plusAll( mixin.data );
+        // Configurations derived from the same root typically share the same context, in which
+        // case there is no need to merge the contexts. The mixin still needs its own context
+        // layer, as parameter values are written to the context of configurations created with
+        // the mixin as their parent (see initialize()).
+        if( config.context == mixin.context ) {
+            this.context = Maps.extend( config.context );
+        }
+        else {
+            this.context = Maps.mixin( config.context, mixin.context );
+        }
+        // Note that both configurations have already been initialized, so their data doesn't
+        // contain any parameter values.
+        this.r = androidContext.getResources();
     }
 
     /**
@@ -157,18 +267,20 @@ public class Configuration {
     private void initialize() {
         this.r = androidContext.getResources();
         // Search the configuration data for any parameter values, add any found to a separate map.
-        Map<String,Object> params = new HashMap<>();
-        for( String key : data.keySet() ) {
+        Map<String,Object> params = null;
+        for( Map.Entry<String,Object> entry : data.entrySet() ) {
+            String key = entry.getKey();
             if( key.startsWith("$") ) {
-                params.put( key, data.get( key ) );
+                if( params == null ) {
+                    params = new HashMap<>();
+                }
+                params.put( key, entry.getValue() );
             }
         }
-        // Remove parameter values from the data map.
-        for( String key : params.keySet() ) {
-            data.remove( key );
-        }
-        // Add param values to the context.
-        if( params.size() > 0 ) {
+        if( params != null ) {
+            // Remove parameter values from the data map.
+            data = PersistentMap.from( data ).minusAll( params.keySet() );
+            // Add param values to the context.
             context.putAll( params );
         }
     }
@@ -185,12 +297,13 @@ public class Configuration {
         if( data instanceof List ) {
             // NOTE important to create a copy of the data at this point; it could be configuration
             // data, and we don't want to rewrite it later.
-            data = new ListBackedMap( new ArrayList( (List)data ) );
+            this.data = new ListBackedMap( new ArrayList( (List)data ) );
         }
-        if( data instanceof Map ) {
-            // NOTE important to create a copy of the data at this point; it could be configuration
-            // data, and we don't want to rewrite it later.
-            this.data = new HashMap( (Map<String,Object>)data );
+        else if( data instanceof Map ) {
+            // NOTE The data is copied to a persistent map, so that it can't be rewritten later.
+            // Data which is already in a persistent map (e.g. data from another configuration)
+            // is shared without copying.
+            this.data = PersistentMap.from( (Map<String,Object>)data );
         }
     }
 
@@ -231,6 +344,17 @@ public class Configuration {
      * return null.
      */
     public Configuration asConfiguration(Object value) {
+        return asConfiguration( value, isDataValue( value ) );
+    }
+
+    /**
+     * Promote a value to a configuration.
+     * @param value     The value to promote.
+     * @param memoize   If true then the resulting configuration is memoized for the value. This
+     *                  should only be true if the value is read directly from the configuration's
+     *                  data, so that the same value instance is returned each time it is read.
+     */
+    private Configuration asConfiguration(Object value, boolean memoize) {
         // If value is already a configuration then return as is.
         if( value instanceof Configuration ) {
             return (Configuration)value;
@@ -247,6 +371,16 @@ public class Configuration {
         // providing data is one of the supported types.
         boolean isConfigDataType = (dataValue instanceof Map) || (dataValue instanceof List);
         if( isConfigDataType && androidContext != null ) {
+            // Check for a previously normalized configuration for the same value. (Note that
+            // values read from resources aren't memoized, because a new resource instance is
+            // returned each time the resource's URI is dereferenced).
+            memoize &= valueRsc == null;
+            if( memoize ) {
+                Configuration result = Memo.resultFor( getValueConfigurationMemo( dataValue ), this );
+                if( result != null ) {
+                    return result;
+                }
+            }
             Configuration configValue = new Configuration( dataValue, this );
             // NOTE When the configuration data is sourced from a resource, then the
             // following properties need to be different from when the data is found
@@ -259,12 +393,41 @@ public class Configuration {
                 configValue.root = configValue;
                 configValue.uriHandler = valueRsc.getURIHandler();
             }
-            return configValue.normalize();
+            Configuration result = configValue.normalize();
+            if( memoize ) {
+                setValueConfigurationMemo( dataValue, new Memo( this, result ) );
+            }
+            return result;
         }
         // Can't resolve a configuration so return null.
         return null;
     }
 
+    /** Get the memoized configuration for a configuration value. */
+    private synchronized Memo getValueConfigurationMemo(Object value) {
+        return valueConfigurations != null ? valueConfigurations.get( new ValueKey( value ) ) : null;
+    }
+
+    /** Memoize the configuration for a configuration value. */
+    private synchronized void setValueConfigurationMemo(Object value, Memo memo) {
+        if( valueConfigurations == null ) {
+            valueConfigurations = new LruCache<>( ValueConfigurationsCacheSize );
+        }
+        valueConfigurations.put( new ValueKey( value ), memo );
+    }
+
+    /** Test whether a value is one of the top-level values of the configuration data. */
+    private boolean isDataValue(Object value) {
+        if( value instanceof Map || value instanceof List ) {
+            for( Object dataValue : data.values() ) {
+                if( dataValue == value ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * An object used to modify values as key paths are resolved on the configuration.
      */
@@ -364,16 +527,22 @@ public class Configuration {
         Object value = KeyPath.resolve( keyPath, data, representation, keyPathModifier );
         // If something other than the raw representation is required then try to convert:
         // * configuration: See the asConfiguration: method;
+        // * resource: Only resource values are returned;
         // * all other representations are passed to TypeConversions.
         if( Representation.Raw != representation ) {
             if( Representation.Configuration == representation ) {
-                value = asConfiguration( value );
+                // Only memoize the configuration if the value was read directly from the
+                // configuration data, i.e. not dereferenced or read from the context.
+                value = asConfiguration( value, value == KeyPath.resolve( keyPath, data ) );
+            }
+            else if( Representation.Resource == representation ) {
+                value = value instanceof Resource ? value : null;
             }
             else if( value instanceof Resource ) {
-                value = ((Resource)value).asRepresentation( representation.toString() );
+                value = ((Resource)value).asRepresentation( ConversionRepresentations[representation.ordinal()] );
             }
             else {
-                value = conversions.asRepresentation( value, representation.toString() );
+                value = conversions.asRepresentation( value, ConversionRepresentations[representation.ordinal()] );
             }
         }
         return value;
@@ -431,6 +600,73 @@ public class Configuration {
         return value == null ? defaultValue : value;
     }
 
+    /** Get a configuration value as an int. */
+    public int getValueAsInt(String keyPath) {
+        return getValueAsInt( keyPath, 0 );
+    }
+
+    /** Get a configuration value as an int. */
+    public int getValueAsInt(String keyPath, int defaultValue) {
+        return conversions.asInt( getNumericValue( keyPath ), defaultValue );
+    }
+
+    /** Get a configuration value as a long. */
+    public long getValueAsLong(String keyPath) {
+        return getValueAsLong( keyPath, 0 );
+    }
+
+    /** Get a configuration value as a long. */
+    public long getValueAsLong(String keyPath, long defaultValue) {
+        return conversions.asLong( getNumericValue( keyPath ), defaultValue );
+    }
+
+    /** Get a configuration value as a float. */
+    public float getValueAsFloat(String keyPath) {
+        return getValueAsFloat( keyPath, 0f );
+    }
+
+    /** Get a configuration value as a float. */
+    public float getValueAsFloat(String keyPath, float defaultValue) {
+        return conversions.asFloat( getNumericValue( keyPath ), defaultValue );
+    }
+
+    /** Get a configuration value as a double. */
+    public double getValueAsDouble(String keyPath) {
+        return getValueAsDouble( keyPath, 0d );
+    }
+
+    /** Get a configuration value as a double. */
+    public double getValueAsDouble(String keyPath, double defaultValue) {
+        return conversions.asDouble( getNumericValue( keyPath ), defaultValue );
+    }
+
+    /** Get a configuration value as a primitive boolean. */
+    public boolean getValueAsBool(String keyPath) {
+        return getValueAsBool( keyPath, false );
+    }
+
+    /** Get a configuration value as a primitive boolean. */
+    public boolean getValueAsBool(String keyPath, boolean defaultValue) {
+        Object value = getValueAs( keyPath, Representation.Raw );
+        if( value instanceof Resource ) {
+            value = ((Resource)value).asBoolean();
+        }
+        return conversions.asBool( value, defaultValue );
+    }
+
+    /**
+     * Resolve a configuration value for conversion to a primitive number.
+     * Values are resolved in their raw representation, so that numbers already in the
+     * configuration data are returned without conversion.
+     */
+    private Object getNumericValue(String keyPath) {
+        Object value = getValueAs( keyPath, Representation.Raw );
+        if( value instanceof Resource ) {
+            value = ((Resource)value).asNumber();
+        }
+        return value;
+    }
+
     /** Get a configuration value as a date. */
     public Date getValueAsDate(String keyPath) {
         return getValueAsDate( keyPath, null );
@@ -598,7 +834,11 @@ public class Configuration {
      * Flatten the configuration by merging "*config", "*mixin" and "*mixins" properties.
      */
     public Configuration flatten() {
-        Configuration result = this;
+        Configuration result = Memo.resultFor( flattened, this );
+        if( result != null ) {
+            return result;
+        }
+        result = this;
         Configuration mixin = getValueAsConfiguration("*config");
         if( mixin != null ) {
             result = mixinConfiguration( mixin );
@@ -613,11 +853,16 @@ public class Configuration {
                 result = mixinConfiguration( mxn );
             }
         }
+        flattened = new Memo( this, result );
         return result;
     }
 
     /** Normalize this configuration by flattening and resolving configuration extensions. */
     public Configuration normalize() {
+        Configuration result = Memo.resultFor( normalized, this );
+        if( result != null ) {
+            return result;
+        }
         // Build the extension hierarchy.
         List<Configuration> hierarchy = new ArrayList<>();
         Configuration current = flatten();
@@ -631,7 +876,7 @@ public class Configuration {
             hierarchy.add( current );
         }
         // Build a single unified configuration from the hierarchy of configs.
-        Configuration result = new Configuration( androidContext ); // Start with an empty config.
+        result = new Configuration( androidContext ); // Start with an empty config.
         // Process hierarchy in reverse order (i.e. from most distant ancestor to current config).
         Collections.reverse( hierarchy );
         for( Configuration config : hierarchy ) {
@@ -640,38 +885,64 @@ public class Configuration {
         result.sourceData = sourceData;
         result.root = root;
         result.uriHandler = uriHandler;
+        normalized = new Memo( this, result );
+        // A normalized configuration is its own normal form.
+        result.normalized = new Memo( result, result );
         return result;
     }
 
+    /** Get the number of normalize/flatten results returned from the normalization cache. */
+    public static int getNormalizationCacheHitCount() {
+        return NormalizationCacheHits.get();
+    }
+
+    /** Get the number of normalize/flatten results which weren't found in the normalization cache. */
+    public static int getNormalizationCacheMissCount() {
+        return NormalizationCacheMisses.get();
+    }
+
     /** Return a copy of the current configuration with the specified top-level keys removed. */
     public Configuration configurationWithKeysExcluded(String... keys) {
-        Map<String,Object> data = new HashMap<>();
-        // Copy non-excluded keys to the new configuration's data.
-        Set<String> excludedKeys = new HashSet<>();
-        Collections.addAll( excludedKeys, keys );
-        for( String key : this.data.keySet() ) {
-            if( !excludedKeys.contains( key ) ) {
-                data.put( key, this.data.get( key ) );
-            }
-        }
+        // Derive the new configuration's data by removing the excluded keys.
+        Map<String,Object> data = PersistentMap.from( this.data ).minusAll( Arrays.asList( keys ) );
         // Create and return the new configuration.
         Configuration result = new Configuration( data, this );
         result.sourceData = sourceData;
         return result;
     }
 
+    /**
+     * Return the configuration's hash code.
+     * The hash code is the content hash of the configuration's data. (Configuration map data is
+     * held in a persistent map, which caches its hash code and calculates the hash codes of derived
+     * maps incrementally, so this is normally a constant time operation). Nested objects and arrays
+     * read from resources and configuration bundles are read-only, and also cache their hash codes,
+     * so each nested value is hashed at most once and derived configurations reuse the hashes of
+     * the values they share. Nested values held in mutable maps and lists (e.g. data parsed from a
+     * string) can't cache their hash codes, and are hashed again each time a persistent map adds
+     * them or calculates its hash code. The context isn't included in the hash code, because the
+     * context may be modified after the configuration is created.
+     */
     @Override
     public int hashCode() {
-        return data.hashCode() ^ context.hashCode();
+        return data.hashCode();
     }
 
     @Override
     public boolean equals(Object obj) {
+        if( obj == this ) {
+            return true;
+        }
         if( !(obj instanceof Configuration) ) {
             return false;
         }
         Configuration config = (Configuration)obj;
-        return data.equals( config.data ) && context.equals( config.context );
+        // Configurations with different content hashes can't be equal.
+        if( hashCode() != config.hashCode() ) {
+            return false;
+        }
+        return (data == config.data || data.equals( config.data ))
+            && (context == config.context || context.equals( config.context ));
     }
 
     @Override
@@ -19,15 +19,21 @@ import android.util.Log;
 import com.innerfunction.uri.Resource;
 import com.innerfunction.uri.StandardURIHandler;
 import com.innerfunction.util.Property;
+import com.innerfunction.util.StringInterner;
 import com.innerfunction.util.TypeConversions;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * A container for named objects and services.
@@ -103,18 +109,52 @@ public class Container implements ConfigurationData, Service, MessageReceiver, M
      * IFIOCConfigurationAware.afterIOCConfig() method.
      */
     private Map<Object,Configuration> pendingValueObjectConfigs;
+    /**
+     * A map of the names currently being built, mapped to the thread building each name.
+     * Used to distinguish dependency cycles from names being built concurrently by another thread.
+     */
+    private Map<String,Thread> namedBuildThreads;
+    /**
+     * A map of threads waiting for a named object being built by another thread, mapped to the
+     * name being waited on. Used to detect dependency cycles which span build threads.
+     */
+    private Map<Thread,String> namedBuildWaits;
+    /**
+     * A lock guarding the container's pending names and pending value state.
+     * Threads waiting for a named object being built by another thread also wait on this lock.
+     */
+    private final Object buildLock = new Object();
+    /**
+     * Flag indicating whether independent named objects should be built concurrently.
+     * @see #configureWith(Configuration)
+     */
+    private boolean parallelBuild = false;
+    /** The number of threads to use when building named objects concurrently. */
+    private int buildThreadCount = Runtime.getRuntime().availableProcessors();
+    /**
+     * Flag indicating whether named objects are built lazily by default.
+     * Can be overridden for individual named objects by using the *lazy configuration property.
+     * @see #isLazyNamed(String)
+     */
+    private boolean lazyBuild = false;
     /**
      * Flag indicating whether the container and all its services are running.
      */
     private boolean running;
     /** An object configurer for the container. */
     private ObjectConfigurer containerConfigurer;
+    /**
+     * Build time compiled types, if available.
+     * Used in place of reflection to instantiate and configure compiled classes.
+     * @see IOCCompiledTypes
+     */
+    private static final IOCCompiledTypes CompiledTypes = loadCompiledTypes();
 
     public Container(Context context, StandardURIHandler uriHandler) {
         this.androidContext = context;
         this.uriHandler = uriHandler;
         this.typeConversions = TypeConversions.instanceForContext( context );
-        this.nameds = new HashMap<>();
+        this.nameds = new ConcurrentHashMap<>();
         this.services = new ArrayList<>();
         this.types = makeConfiguration( new HashMap<String,Object>() );
         this.running = false;
@@ -122,6 +162,8 @@ public class Container implements ConfigurationData, Service, MessageReceiver, M
         this.pendingNames = new HashMap<>();
         this.pendingValueRefCounts = new HashMap<>();
         this.pendingValueObjectConfigs = new HashMap<>();
+        this.namedBuildThreads = new HashMap<>();
+        this.namedBuildWaits = new HashMap<>();
         this.containerConfigurer = new ObjectConfigurer( this );
     }
 
@@ -150,6 +192,39 @@ public class Container implements ConfigurationData, Service, MessageReceiver, M
         this.priorityNames = Arrays.asList( priorityNames );
     }
 
+    /**
+     * Set whether independent named objects should be built concurrently.
+     * Defaults to false. Note that when enabled, named objects are instantiated and configured
+     * off the calling thread, so shouldn't be used with objects (e.g. web views) which can only
+     * be instantiated on the main thread.
+     */
+    public void setParallelBuild(boolean parallelBuild) {
+        this.parallelBuild = parallelBuild;
+    }
+
+    public boolean isParallelBuild() {
+        return parallelBuild;
+    }
+
+    /** Set the number of threads used to build named objects concurrently. */
+    public void setBuildThreadCount(int buildThreadCount) {
+        this.buildThreadCount = Math.max( 1, buildThreadCount );
+    }
+
+    /**
+     * Set whether named objects are built lazily by default.
+     * Defaults to false. When true, named objects are only built when first accessed, unless
+     * their configuration specifies *lazy: false. Note that services (i.e. objects implementing
+     * the Service interface) aren't started until built, so should normally be built eagerly.
+     */
+    public void setLazyBuild(boolean lazyBuild) {
+        this.lazyBuild = lazyBuild;
+    }
+
+    public boolean isLazyBuild() {
+        return lazyBuild;
+    }
+
     /**
      * Create a configuration object from the specified configuration data source.
      */
@@ -254,34 +329,32 @@ public class Container implements ConfigurationData, Service, MessageReceiver, M
      */
     public Object newInstanceForClassNameAndConfiguration(String className, Configuration configuration) {
         Object instance = null;
+        IOCClassInfo classInfo = IOCClassInfo.forClassName( className );
+        if( classInfo == null ) {
+            Log.e( Tag, String.format( "Class not found: %s", className ) );
+            return null;
+        }
         // If config proxy available for classname then instantiate proxy instead of new instance.
-        IOCProxyLookup.Entry proxyEntry = IOCProxyLookup.lookupConfigurationProxyForClassName( className );
+        IOCProxyLookup.Entry proxyEntry = classInfo.getProxyEntry();
         if( proxyEntry != null ) {
             instance = proxyEntry.instantiateProxy( androidContext );
         }
         else {
+            // Use the compiled types to instantiate the class, if available.
+            if( CompiledTypes != null ) {
+                instance = newCompiledInstance( className, configuration );
+            }
             // Otherwise continue with class instantiation.
-            try {
-                Class objClass = Class.forName( className );
-                // Try constructing with a single android Context argument.
-                instance = constructWithArgument( objClass, Context.class, androidContext );
-                // Try constructing with a single Configuration argument.
-                if( instance == null ) {
-                    instance = constructWithArgument( objClass, Configuration.class, configuration );
-                    // Try constructing with a no-args constructor.
-                    if( instance == null ) {
-                        instance = objClass.newInstance();
-                    }
+            if( instance == null ) {
+                try {
+                    instance = classInfo.newInstance( androidContext, configuration );
+                }
+                catch(InstantiationException e) {
+                    Log.w( Tag, e.getMessage() );
+                }
+                catch(Exception e) {
+                    Log.e( Tag, String.format( "Error initializing object of class %s", className ), e );
                 }
-            }
-            catch(ClassNotFoundException e) {
-                Log.e( Tag, String.format( "Class not found: %s", className ) );
-            }
-            catch(InstantiationException e) {
-                Log.w( Tag, e.getMessage() );
-            }
-            catch(Exception e) {
-                Log.e( Tag, String.format( "Error initializing object of class %s", className ), e );
             }
         }
         if( instance != null ) {
@@ -291,27 +364,38 @@ public class Container implements ConfigurationData, Service, MessageReceiver, M
     }
 
     /**
-     * Try instantiating an object by calling a specific constructor.
-     * Looks for a single argument constructor on the specified class, accepting an argument
-     * the same type as the 'arg' parameter.
-     * @param objClass  The class being instantiated.
-     * @param argClass  The class of the constructor method argument.
-     * @param arg       The constructor method argument value.
-     * @return The newly constructed object, or null if the class doesn't have a matching
-     * constructor.
-     * @throws InstantiationException
-     * @throws IllegalAccessException
-     * @throws InvocationTargetException
+     * Instantiate an object using the build time compiled types.
+     * @return The new instance, or null if the class isn't compiled or can't be instantiated.
      */
-    private Object constructWithArgument(Class objClass, Class argClass, Object arg) throws InstantiationException, IllegalAccessException, InvocationTargetException {
+    private Object newCompiledInstance(String className, Configuration configuration) {
         try {
-            Constructor constructor = objClass.getConstructor( argClass );
-            if( constructor != null ) {
-                return constructor.newInstance( arg );
-            }
+            return CompiledTypes.newInstance( className, androidContext, configuration );
+        }
+        catch(Exception e) {
+            Log.e( Tag, String.format( "Error initializing object of class %s", className ), e );
+        }
+        return null;
+    }
+
+    /** Get the build time compiled types. Returns null if no compiled types are available. */
+    static IOCCompiledTypes getCompiledTypes() {
+        return CompiledTypes;
+    }
+
+    /**
+     * Load the build time compiled types.
+     * Returns null if the app hasn't been built with the pttn-compiler annotation processor.
+     */
+    private static IOCCompiledTypes loadCompiledTypes() {
+        try {
+            Class compiledTypesClass = Class.forName( IOCCompiledTypes.ClassName );
+            return (IOCCompiledTypes)compiledTypesClass.newInstance();
         }
-        catch(NoSuchMethodException nsme) {
-            // Ignore: Classes not required to have a specific constructor.
+        catch(ClassNotFoundException e) {
+            // No compiled types available.
+        }
+        catch(Exception e) {
+            Log.w( Tag, String.format( "Failed to load compiled types %s", IOCCompiledTypes.ClassName ), e );
         }
         return null;
     }
@@ -360,6 +444,15 @@ public class Container implements ConfigurationData, Service, MessageReceiver, M
      *      the final object in a cycle won't be fully configured when injected into the dependent.
      * </li>
      * </ul>
+     * If parallel build is enabled then, once the priority names are built, the container scans
+     * the configuration for references between named objects (see NamedDependencyGraph) and
+     * builds each object on a pool of build threads as soon as all of its known dependencies are
+     * built. Any dependencies not found by the scan are resolved through getNamed() as above;
+     * a thread needing a name being built by another thread waits for the build to complete,
+     * unless doing so would deadlock, in which case the dependency is treated as a cycle. Names
+     * which belong to a dependency cycle are built last, on the calling thread.
+     * Named objects configured as lazy (see isLazyNamed()) are skipped by this method, and are
+     * instead built by getNamed() the first time the name is accessed.
      */
     public void configureWith(Configuration configuration) {
         long start = System.currentTimeMillis();
@@ -370,8 +463,17 @@ public class Container implements ConfigurationData, Service, MessageReceiver, M
                 buildNamedObject( name );
             }
         }
-        // Iterate over named object configs and build each object.
-        List<String> names = configuration.getValueNames();
+        // Iterate over named object configs and build each object. Lazy names are left to be
+        // built on first access.
+        List<String> names = new ArrayList<>();
+        for( String name : configuration.getValueNames() ) {
+            if( !isLazyNamed( name ) ) {
+                names.add( name );
+            }
+        }
+        if( parallelBuild ) {
+            buildNamedObjectsInParallel( names );
+        }
         for( String name : names ) {
             // Build the object only if it has not already been built and added to named.
             // (Objects which are dependencies of other objects may be configured via getNamed()
@@ -394,6 +496,107 @@ public class Container implements ConfigurationData, Service, MessageReceiver, M
         Log.d(Tag, String.format("\tAverage number of properties per object=%.2f", avgPropertiesPerObject ));
         Log.d(Tag, String.format("\tms per property=%.2f ms", msPerProperty ));
         Log.d(Tag, String.format("\tms per object=%.2f ms", msPerObject ));
+        StringInterner interner = uriHandler.getStringInterner();
+        Log.d(Tag, String.format("\tNumber of interned configuration strings=%d", interner.size() ));
+        Log.d(Tag, String.format("\tNumber of duplicate strings replaced=%d", interner.getDuplicateCount() ));
+        Log.d(Tag, String.format("\tEstimated heap saved by interning=%.1f KB", interner.getSavedBytes() / 1024f ));
+    }
+
+    /**
+     * Test whether a named object should be built lazily.
+     * A named object is lazy if its configuration has a *lazy property set to true, or if the
+     * container's lazy build default is set and the configuration doesn't set *lazy to false.
+     */
+    protected boolean isLazyNamed(String name) {
+        if( priorityNames.contains( name ) ) {
+            return false;
+        }
+        return containerConfig.getValueAsBool( name+".*lazy", lazyBuild );
+    }
+
+    /**
+     * Build a set of named objects concurrently.
+     * Each object is submitted to a pool of build threads once all the objects it is known to
+     * depend on have been built. Objects with dependencies which can't be resolved this way (i.e.
+     * because they are part of a dependency cycle) are left unbuilt, and are then built by the
+     * calling method.
+     */
+    private void buildNamedObjectsInParallel(List<String> names) {
+        List<String> unbuilt = new ArrayList<>();
+        for( String name : names ) {
+            if( !nameds.containsKey( name ) ) {
+                unbuilt.add( name );
+            }
+        }
+        NamedDependencyGraph graph = new NamedDependencyGraph( containerConfig, unbuilt );
+        // Count the number of unbuilt dependencies of each name; names without dependencies are
+        // ready to build.
+        Map<String,Integer> waitCounts = new HashMap<>();
+        List<String> ready = new ArrayList<>();
+        for( String name : unbuilt ) {
+            int count = graph.getDependencies( name ).size();
+            if( count == 0 ) {
+                ready.add( name );
+            }
+            else {
+                waitCounts.put( name, count );
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool( buildThreadCount );
+        CompletionService<String> builds = new ExecutorCompletionService<>( executor );
+        int running = 0;
+        try {
+            while( true ) {
+                for( final String name : ready ) {
+                    builds.submit( new Callable<String>() {
+                        @Override
+                        public String call() throws Exception {
+                            // Note that the name may already have been built by another thread,
+                            // as a dependency not found by the graph scan.
+                            getNamed( name );
+                            return name;
+                        }
+                    });
+                    running++;
+                }
+                ready.clear();
+                if( running == 0 ) {
+                    break;
+                }
+                // Wait for the next build to complete, then release any names waiting on it.
+                String built = builds.take().get();
+                running--;
+                for( String dependent : graph.getDependents( built ) ) {
+                    Integer count = waitCounts.get( dependent );
+                    if( count != null ) {
+                        if( count > 1 ) {
+                            waitCounts.put( dependent, count - 1 );
+                        }
+                        else {
+                            waitCounts.remove( dependent );
+                            ready.add( dependent );
+                        }
+                    }
+                }
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted whilst building named objects", e );
+        }
+        catch(ExecutionException e) {
+            Throwable cause = e.getCause();
+            if( cause instanceof RuntimeException ) {
+                throw (RuntimeException)cause;
+            }
+            throw new RuntimeException("Building named objects", cause );
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        if( waitCounts.size() > 0 ) {
+            Log.d( Tag, String.format("Building %d named objects with cyclic dependencies", waitCounts.size() ) );
+        }
     }
 
     /**
@@ -401,38 +604,61 @@ public class Container implements ConfigurationData, Service, MessageReceiver, M
      */
     protected Object buildNamedObject(String name) {
         // Track that we're about to build this name.
-        pendingNames.put( name, new ArrayList<PendingNamed>() );
-        // Build the object.
-        Object object = containerConfigurer.configureNamedObject( name, containerConfig );
-        if( object != null ) {
-            // Map the named object.
-            nameds.put( name, object );
+        synchronized( buildLock ) {
+            // Check whether the name is already built or being built; this can happen when the
+            // container is building named objects concurrently.
+            if( nameds.containsKey( name ) || pendingNames.containsKey( name ) ) {
+                return awaitNamed( name );
+            }
+            pendingNames.put( name, new ArrayList<PendingNamed>() );
+            namedBuildThreads.put( name, Thread.currentThread() );
+        }
+        Object object = null;
+        List<PendingNamed> pendings;
+        try {
+            // Build the object.
+            object = containerConfigurer.configureNamedObject( name, containerConfig );
+        }
+        finally {
+            synchronized( buildLock ) {
+                if( object != null ) {
+                    // Map the named object.
+                    nameds.put( name, object );
+                }
+                // Finished building the current name, remove from list and wake any threads
+                // waiting for the name.
+                pendings = pendingNames.remove( name );
+                namedBuildThreads.remove( name );
+                buildLock.notifyAll();
+            }
         }
         // Object is configured, notify any pending named references
-        List<PendingNamed> pendings = pendingNames.get( name );
         for( PendingNamed pending : pendings ) {
             if( pending.hasWaitingConfigurer() ) {
                 Object value = pending.completeWithValue( object );
                 // Decrement the number of pending value refs for the property object.
                 Object objectKey = pending.getObjectKey();
-                int refCount = pendingValueRefCounts.get( objectKey ) - 1;
-                if( refCount > 0 ) {
-                    pendingValueRefCounts.put( objectKey, refCount );
-                }
-                else {
-                    pendingValueRefCounts.remove( objectKey );
-                    // The property object is now fully configured, invoke its afterConfigure()
-                    // method if it implements IOCConfigurationAware.
-                    Object pendingObj = pending.getObject();
-                    if( pendingObj instanceof IOCConfigurationAware ) {
-                        Configuration objConfig = pendingValueObjectConfigs.remove( objectKey );
-                        ((IOCConfigurationAware)pendingObj).afterIOCConfigure( objConfig );
+                Configuration objConfig = null;
+                boolean completed = false;
+                synchronized( buildLock ) {
+                    int refCount = pendingValueRefCounts.get( objectKey ) - 1;
+                    if( refCount > 0 ) {
+                        pendingValueRefCounts.put( objectKey, refCount );
+                    }
+                    else {
+                        pendingValueRefCounts.remove( objectKey );
+                        objConfig = pendingValueObjectConfigs.remove( objectKey );
+                        completed = true;
                     }
                 }
+                // If the property object is now fully configured then invoke its afterConfigure()
+                // method if it implements IOCConfigurationAware.
+                Object pendingObj = pending.getObject();
+                if( completed && pendingObj instanceof IOCConfigurationAware ) {
+                    ((IOCConfigurationAware)pendingObj).afterIOCConfigure( objConfig );
+                }
             }
         }
-        // Finished building the current name, remove from list.
-        pendingNames.remove( name );
         // Return the configured object.
         return object;
     }
@@ -442,21 +668,11 @@ public class Container implements ConfigurationData, Service, MessageReceiver, M
         Object named = nameds.get( name );
         // If named object not found then consider whether to try building it.
         if( named == null ) {
-            // Check for a dependency cycle. If the requested name exists in pendingNames then the
-            // named object is currently being configured.
-            List<PendingNamed> pendings = pendingNames.get( name );
-            if( pendings != null ) {
-                Log.d( Tag, String.format("IDO: Named dependency cycle detected, creating pending entry for %s...",
-                    name ) );
-                // Create a placeholder object and record in the list of placeholders waiting for
-                // the named configuration to complete. Note that the placeholder is returned in
-                // place of the named - code above detects the placeholder and ensures that the
-                // correct value is resolved instead.
-                PendingNamed pending = new PendingNamed();
-                pendings.add( pending );
-                named = pending;
+            // Check whether the named object is currently being built.
+            synchronized( buildLock ) {
+                named = awaitNamed( name );
             }
-            else if( containerConfig.hasValue( name ) ) {
+            if( named == null && containerConfig.hasValue( name ) ) {
                 // The container config contains a configuration for the wanted name, but named
                 // doesn't contain any reference so therefore it's likely that the object hasn't
                 // been built yet; try building it now.
@@ -471,6 +687,74 @@ public class Container implements ConfigurationData, Service, MessageReceiver, M
         return named;
     }
 
+    /**
+     * Resolve a name which may be in the process of being built.
+     * Must be called whilst holding the build lock.
+     * If the name is being built by another thread then waits for the build to complete. If the
+     * name is being built by the current thread - or if waiting for the build would deadlock -
+     * then a dependency cycle has been found, and a pending named placeholder is returned.
+     * @return The named object, a pending named placeholder, or null if the name isn't built
+     * and isn't being built.
+     */
+    private Object awaitNamed(String name) {
+        Thread currentThread = Thread.currentThread();
+        Object named;
+        while( (named = nameds.get( name )) == null ) {
+            List<PendingNamed> pendings = pendingNames.get( name );
+            if( pendings == null ) {
+                // Name isn't being built.
+                break;
+            }
+            // Check for a dependency cycle. If the requested name exists in pendingNames, and is
+            // being built by this thread (or by a thread waiting on this thread) then the named
+            // object is currently being configured further up the call stack.
+            if( isNamedBuildCycle( name, currentThread ) ) {
+                Log.d( Tag, String.format("IDO: Named dependency cycle detected, creating pending entry for %s...",
+                    name ) );
+                // Create a placeholder object and record in the list of placeholders waiting for
+                // the named configuration to complete. Note that the placeholder is returned in
+                // place of the named - code above detects the placeholder and ensures that the
+                // correct value is resolved instead.
+                PendingNamed pending = new PendingNamed();
+                pendings.add( pending );
+                return pending;
+            }
+            // The name is being built by another thread, wait for it to complete.
+            namedBuildWaits.put( currentThread, name );
+            try {
+                buildLock.wait();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            finally {
+                namedBuildWaits.remove( currentThread );
+            }
+        }
+        return named;
+    }
+
+    /**
+     * Test whether a name being built is part of a dependency cycle with the specified thread.
+     * Follows the chain of threads waiting on the name's build thread; if the chain leads back
+     * to the specified thread then waiting for the name would deadlock.
+     */
+    private boolean isNamedBuildCycle(String name, Thread thread) {
+        Thread buildThread = namedBuildThreads.get( name );
+        while( buildThread != null ) {
+            if( buildThread == thread ) {
+                return true;
+            }
+            String waitName = namedBuildWaits.get( buildThread );
+            if( waitName == null ) {
+                break;
+            }
+            buildThread = namedBuildThreads.get( waitName );
+        }
+        return false;
+    }
+
     /** Configure the container with the specified data. */
     public void configureWithData(Object data) {
         Configuration configuration = new Configuration( data, uriHandler, androidContext );
@@ -493,7 +777,9 @@ public class Container implements ConfigurationData, Service, MessageReceiver, M
         }
         // If instance is a service then add to list of services.
         if( object instanceof Service ) {
-            services.add( (Service)object );
+            synchronized( services ) {
+                services.add( (Service)object );
+            }
         }
     }
 
@@ -509,18 +795,22 @@ public class Container implements ConfigurationData, Service, MessageReceiver, M
     /** Increment the number of pending value refs for an object. */
     public void incPendingValueRefCountForPendingObject(PendingNamed pending) {
         Object objectKey = pending.getObjectKey();
-        Integer refCount = pendingValueRefCounts.get( objectKey );
-        if( refCount != null ) {
-            pendingValueRefCounts.put( objectKey, refCount + 1 );
-        }
-        else {
-            pendingValueRefCounts.put( objectKey, 0 );
+        synchronized( buildLock ) {
+            Integer refCount = pendingValueRefCounts.get( objectKey );
+            if( refCount != null ) {
+                pendingValueRefCounts.put( objectKey, refCount + 1 );
+            }
+            else {
+                pendingValueRefCounts.put( objectKey, 0 );
+            }
         }
     }
 
     /** Test whether an object has pending value references. */
     public boolean hasPendingValueRefsForObjectKey(Object objectKey) {
-        return pendingValueRefCounts.get( objectKey ) != null;
+        synchronized( buildLock ) {
+            return pendingValueRefCounts.get( objectKey ) != null;
+        }
     }
 
     /**
@@ -528,7 +818,9 @@ public class Container implements ConfigurationData, Service, MessageReceiver, M
      * Needed to ensure the the IOCConfigurationAware.afterIOCConfigure method is called correctly.
      */
     public void recordPendingValueObjectConfiguration(Object objectKey, Configuration configuration) {
-        pendingValueObjectConfigs.put( objectKey, configuration );
+        synchronized( buildLock ) {
+            pendingValueObjectConfigs.put( objectKey, configuration );
+        }
     }
 
     /** Test if the container is started. */
@@ -536,11 +828,21 @@ public class Container implements ConfigurationData, Service, MessageReceiver, M
         return running;
     }
 
+    /**
+     * Get a snapshot of the contained services.
+     * Services may be added by concurrent builds while the services are being started or stopped.
+     */
+    private List<Service> getServices() {
+        synchronized( services ) {
+            return new ArrayList<>( services );
+        }
+    }
+
     // Service interface
     @Override
     public void startService() {
         running = true;
-        for( Service service : services ) {
+        for( Service service : getServices() ) {
             try {
                 service.startService();
             }
@@ -552,7 +854,7 @@ public class Container implements ConfigurationData, Service, MessageReceiver, M
 
     @Override
     public void stopService() {
-        for( Service service : services ) {
+        for( Service service : getServices() ) {
             try {
                 service.stopService();
             }
@@ -582,9 +884,13 @@ public class Container implements ConfigurationData, Service, MessageReceiver, M
             routed = receiveMessage( message, sender );
         }
         else {
-            // Look-up the message target in named objects.
+            // Look-up the message target in named objects. Note that the target may be a lazy
+            // named object which hasn't been built yet.
             String targetHead = message.targetHead();
             Object target = nameds.get( targetHead );
+            if( target == null && containerConfig != null && containerConfig.hasValue( targetHead ) ) {
+                target = getNamed( targetHead );
+            }
             if( target != null ) {
                 message = message.popTargetHead();
                 // If we have the intended target, and the target is a message handler, then let it
@@ -0,0 +1,243 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.pttn;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.innerfunction.util.Property;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metadata about a class instantiated or configured by the IOC container.
+ * A single registry of class information, keyed by class, used by the container and object
+ * configurer on their hot paths. Each item of information is resolved the first time it's needed
+ * and is then cached for the lifetime of the app. The registry is unbounded and lock free: reads
+ * never block, and two threads resolving the same information at the same time will produce the
+ * same result, with one result being discarded.
+ */
+final class IOCClassInfo {
+
+    static final String Tag = IOCClassInfo.class.getSimpleName();
+
+    /** The class registry. */
+    static final ConcurrentHashMap<Class,IOCClassInfo> InfoByClass = new ConcurrentHashMap<>();
+    /** A cache of class names resolved to class information. */
+    static final Map<String,IOCClassInfo> InfoByClassName = new ConcurrentHashMap<>();
+
+    /** The class. */
+    final Class<?> type;
+    /** The class name, as used for proxy lookups. */
+    final String className;
+    /** The class' configurable properties. */
+    private volatile Map<String,Property> properties;
+    /** The standard configuration type of the class. */
+    private volatile ObjectConfigurer.StandardTypes standardType;
+    /** The constructor used to instantiate the class. */
+    private volatile Instantiator instantiator;
+    /** The class' configuration proxy; IOCProxyLookup.NullEntry if the class has no proxy. */
+    private volatile IOCProxyLookup.Entry proxyEntry;
+    /** The class' generated properties factory; NullPropertiesFactory if none. */
+    private volatile ObjectConfigurer.PropertiesFactory propertiesFactory;
+
+    /**
+     * A resolved class constructor.
+     * The container instantiates classes using, in order of precedence, a constructor accepting
+     * an Android context; or a configuration; or no arguments.
+     */
+    static final class Instantiator {
+        /** The constructor. Null if the class has no context or configuration constructor. */
+        final Constructor<?> constructor;
+        /** The constructor's argument type. */
+        final Class<?> argType;
+
+        Instantiator(Constructor<?> constructor, Class<?> argType) {
+            this.constructor = constructor;
+            this.argType = argType;
+        }
+    }
+
+    /** A placeholder factory for classes without generated properties. */
+    static final ObjectConfigurer.PropertiesFactory NullPropertiesFactory = new ObjectConfigurer.PropertiesFactory() {
+        @Override
+        public ObjectConfigurer.Properties getProperties(Object object) {
+            return null;
+        }
+    };
+
+    private IOCClassInfo(Class<?> type) {
+        this.type = type;
+        String className = type.getCanonicalName();
+        // Anonymous and local classes don't have a canonical name.
+        this.className = className != null ? className : type.getName();
+    }
+
+    /** Get the information for a class. */
+    static IOCClassInfo forClass(Class<?> type) {
+        IOCClassInfo info = InfoByClass.get( type );
+        if( info == null ) {
+            info = new IOCClassInfo( type );
+            IOCClassInfo existing = InfoByClass.putIfAbsent( type, info );
+            if( existing != null ) {
+                info = existing;
+            }
+        }
+        return info;
+    }
+
+    /**
+     * Get the information for a named class.
+     * Uses the build time compiled types to resolve the class name, if available.
+     * @return The class information, or null if the class isn't found.
+     */
+    static IOCClassInfo forClassName(String className) {
+        IOCClassInfo info = InfoByClassName.get( className );
+        if( info == null ) {
+            Class<?> type = null;
+            IOCCompiledTypes compiledTypes = Container.getCompiledTypes();
+            if( compiledTypes != null ) {
+                type = compiledTypes.classForName( className );
+            }
+            if( type == null ) {
+                try {
+                    type = Class.forName( className );
+                }
+                catch(ClassNotFoundException e) {
+                    return null;
+                }
+            }
+            info = forClass( type );
+            InfoByClassName.put( className, info );
+        }
+        return info;
+    }
+
+    /** Get the class' configurable properties. */
+    Map<String,Property> getProperties() {
+        Map<String,Property> result = properties;
+        if( result == null ) {
+            result = properties = Property.getPropertiesForClass( type );
+        }
+        return result;
+    }
+
+    /** Get the class' standard configuration type. */
+    ObjectConfigurer.StandardTypes getStandardType() {
+        ObjectConfigurer.StandardTypes result = standardType;
+        if( result == null ) {
+            result = standardType = ObjectConfigurer.resolveStandardTypeForClass( type );
+        }
+        return result;
+    }
+
+    /**
+     * Get the configuration proxy for the class.
+     * @return The proxy entry, or null if no proxy is registered for the class or any of its
+     * superclasses.
+     */
+    IOCProxyLookup.Entry getProxyEntry() {
+        IOCProxyLookup.Entry result = proxyEntry;
+        if( result == null ) {
+            result = IOCProxyLookup.lookupConfigurationProxy( type, className );
+            if( result == null ) {
+                result = IOCProxyLookup.NullEntry;
+            }
+            proxyEntry = result;
+        }
+        return result == IOCProxyLookup.NullEntry ? null : result;
+    }
+
+    /**
+     * Get the class' generated properties factory.
+     * @return The factory generated for an @IOCConfigurable class, or null if the class doesn't
+     * have generated properties.
+     */
+    ObjectConfigurer.PropertiesFactory getGeneratedPropertiesFactory() {
+        ObjectConfigurer.PropertiesFactory result = propertiesFactory;
+        if( result == null ) {
+            result = NullPropertiesFactory;
+            String factoryClassName = type.getName().replace('$', '_')+IOCConfigurable.GeneratedClassSuffix;
+            try {
+                Class factoryClass = Class.forName( factoryClassName, true, type.getClassLoader() );
+                result = (ObjectConfigurer.PropertiesFactory)factoryClass.newInstance();
+            }
+            catch(ClassNotFoundException e) {
+                // Class doesn't have generated properties.
+            }
+            catch(Exception e) {
+                Log.w( Tag, String.format("Failed to load generated properties %s", factoryClassName ), e );
+            }
+            propertiesFactory = result;
+        }
+        return result == NullPropertiesFactory ? null : result;
+    }
+
+    /**
+     * Instantiate a new instance of the class.
+     * @param context       An Android context, passed to context constructors.
+     * @param configuration The object configuration, passed to configuration constructors.
+     * @return A new instance of the class.
+     */
+    Object newInstance(Context context, Configuration configuration) throws InstantiationException, IllegalAccessException, InvocationTargetException {
+        Instantiator result = instantiator;
+        if( result == null ) {
+            result = instantiator = resolveInstantiator();
+        }
+        if( result.argType == Context.class ) {
+            return result.constructor.newInstance( context );
+        }
+        if( result.argType == Configuration.class ) {
+            return result.constructor.newInstance( configuration );
+        }
+        return type.newInstance();
+    }
+
+    /** Find the constructor used to instantiate the class. */
+    private Instantiator resolveInstantiator() {
+        Constructor<?> constructor = findConstructor( Context.class );
+        if( constructor != null ) {
+            return new Instantiator( constructor, Context.class );
+        }
+        constructor = findConstructor( Configuration.class );
+        if( constructor != null ) {
+            return new Instantiator( constructor, Configuration.class );
+        }
+        return new Instantiator( null, null );
+    }
+
+    /** Find a public, single argument constructor accepting the specified argument type. */
+    private Constructor<?> findConstructor(Class<?> argType) {
+        try {
+            return type.getConstructor( argType );
+        }
+        catch(NoSuchMethodException nsme) {
+            // Ignore: Classes not required to have a specific constructor.
+        }
+        return null;
+    }
+
+    /**
+     * Clear the cached proxy entries of all classes.
+     * Called when a new proxy class is registered.
+     */
+    static void clearProxyEntries() {
+        for( IOCClassInfo info : InfoByClass.values() ) {
+            info.proxyEntry = null;
+        }
+    }
+}
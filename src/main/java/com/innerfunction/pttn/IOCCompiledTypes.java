@@ -0,0 +1,54 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.pttn;
+
+import android.content.Context;
+
+/**
+ * An interface implemented by classes generated at build time from an app's configuration.
+ * The generated class provides reflection free instantiation and configuration of the classes
+ * named in the app configuration and its type map. An app generates its compiled types by
+ * adding the pttn-compiler module as an annotation processor; the container loads the generated
+ * class, if present, using the class name below. Classes which aren't compiled are instantiated
+ * and configured using reflection, as normal.
+ */
+public interface IOCCompiledTypes {
+
+    /** The name of the generated compiled types class. */
+    String ClassName = "com.innerfunction.pttn.compiled.PttnCompiledTypes";
+
+    /**
+     * Get the class for a class name.
+     * @return The class, or null if the class name isn't compiled.
+     */
+    Class<?> classForName(String className);
+
+    /**
+     * Instantiate a new instance of a compiled class.
+     * The instance is created using the same constructor the container would select, i.e. a
+     * constructor accepting an Android context; or a configuration; or no arguments.
+     * @param className     The name of the class to instantiate.
+     * @param context       An Android context.
+     * @param configuration The configuration of the object being instantiated.
+     * @return A new instance, or null if the class name isn't compiled.
+     */
+    Object newInstance(String className, Context context, Configuration configuration);
+
+    /**
+     * Get the configurable properties of an object.
+     * @return The object's properties, or null if the object's class isn't compiled.
+     */
+    ObjectConfigurer.Properties getProperties(Object object);
+
+}
@@ -0,0 +1,36 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.pttn;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class whose configurable properties are generated at build time.
+ * The pttn-compiler annotation processor generates a class named [ClassName]_IOCProperties, in
+ * the same package as the annotated class, which implements ObjectConfigurer.PropertiesFactory.
+ * The object configurer uses the generated properties to configure instances of the annotated
+ * class, in place of reflection. Note that subclasses of an annotated class aren't covered by
+ * the annotation, and are configured using reflection unless also annotated.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface IOCConfigurable {
+
+    /** The suffix appended to the annotated class name to give the generated class name. */
+    String GeneratedClassSuffix = "_IOCProperties";
+
+}
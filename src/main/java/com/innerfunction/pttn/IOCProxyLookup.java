@@ -17,8 +17,8 @@ import android.content.Context;
 import android.util.Log;
 
 import java.lang.reflect.Constructor;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Lookup map of configuration proxies keyed by class name.
@@ -92,9 +92,10 @@ public class IOCProxyLookup {
 
     /**
      * The lookup map
-     * Maps the class name of the object being proxied to the proxy class.
+     * Maps the class name of the object being proxied to the proxy class. Note that lookups
+     * update the map, and may happen on any thread building objects for a container.
      */
-    static final Map<String,Entry> Proxies = new HashMap<>();
+    static final Map<String,Entry> Proxies = new ConcurrentHashMap<>();
 
     /**
      * Register a new proxy class.
@@ -108,6 +109,8 @@ public class IOCProxyLookup {
         else {
             Proxies.put( proxiedClassName, new Entry( proxyClass ) );
         }
+        // Discard proxy entries previously resolved by the class info registry.
+        IOCClassInfo.clearProxyEntries();
     }
 
     /**
@@ -126,9 +129,7 @@ public class IOCProxyLookup {
      * the object's class.
      */
     static Entry lookupConfigurationProxyForObject(Object object) {
-        Class objClass = object.getClass();
-        String className = objClass.getCanonicalName();
-        return lookupConfigurationProxy( objClass, className );
+        return IOCClassInfo.forClass( object.getClass() ).getProxyEntry();
     }
 
     /**
@@ -138,14 +139,12 @@ public class IOCProxyLookup {
      * the object's class.
      */
     static Entry lookupConfigurationProxyForClassName(String className) {
-        try {
-            Class objClass = Class.forName( className );
-            return lookupConfigurationProxy( objClass, className );
-        }
-        catch(ClassNotFoundException e) {
+        IOCClassInfo classInfo = IOCClassInfo.forClassName( className );
+        if( classInfo == null ) {
             Log.w( Tag, String.format("Class not found: %s", className ) );
+            return null;
         }
-        return null;
+        return classInfo.getProxyEntry();
     }
 
     /**
@@ -0,0 +1,140 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.pttn;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A graph of the dependencies between the named objects of a container configuration.
+ * Dependencies are discovered by scanning the raw configuration data of each named object for
+ * references to other top-level names, i.e. named: URI references (which resolve to the built
+ * named object) and # key path references (which resolve to the named object's configuration).
+ * The graph is only an approximation of the true dependency graph: references which are only
+ * discoverable once a value has been resolved (e.g. references generated from string templates,
+ * or contained in a configuration loaded from a separate resource) won't be found. The container
+ * resolves such references at build time using its getNamed() method.
+ * @see Container#configureWith(Configuration)
+ */
+class NamedDependencyGraph {
+
+    /** The URI scheme prefix of named object references. */
+    static final String NamedSchemePrefix = "named:";
+
+    /** A map of names onto the set of names they depend on. */
+    private Map<String,Set<String>> dependencies = new HashMap<>();
+    /** A map of names onto the set of names that depend on them. */
+    private Map<String,Set<String>> dependents = new HashMap<>();
+
+    /**
+     * Build the dependency graph for a set of names.
+     * @param configuration The container configuration.
+     * @param names         The names to include in the graph. References to names not on this
+     *                      list are ignored.
+     */
+    NamedDependencyGraph(Configuration configuration, Collection<String> names) {
+        Set<String> nameSet = new HashSet<>( names );
+        Map<?,?> data = (Map<?,?>)configuration.getData();
+        for( String name : nameSet ) {
+            Set<String> refs = new HashSet<>();
+            scanValue( data.get( name ), refs );
+            // Only keep references to other names in the graph. Self references are resolved by
+            // the container's pending named mechanism, and so aren't recorded as dependencies.
+            refs.retainAll( nameSet );
+            refs.remove( name );
+            dependencies.put( name, refs );
+            for( String ref : refs ) {
+                Set<String> refDependents = dependents.get( ref );
+                if( refDependents == null ) {
+                    refDependents = new HashSet<>();
+                    dependents.put( ref, refDependents );
+                }
+                refDependents.add( name );
+            }
+        }
+    }
+
+    /** Get the names that a name depends on. */
+    Set<String> getDependencies(String name) {
+        Set<String> result = dependencies.get( name );
+        return result != null ? result : Collections.<String>emptySet();
+    }
+
+    /** Get the names which depend on a name. */
+    Set<String> getDependents(String name) {
+        Set<String> result = dependents.get( name );
+        return result != null ? result : Collections.<String>emptySet();
+    }
+
+    /** Recursively scan a raw configuration value for named references. */
+    private void scanValue(Object value, Set<String> refs) {
+        if( value instanceof String ) {
+            scanString( (String)value, refs );
+        }
+        else if( value instanceof Map ) {
+            for( Object item : ((Map)value).values() ) {
+                scanValue( item, refs );
+            }
+        }
+        else if( value instanceof List ) {
+            for( Object item : (List)value ) {
+                scanValue( item, refs );
+            }
+        }
+    }
+
+    /**
+     * Scan a string value for named references.
+     * Recognizes # key path references, and named: URI references anywhere within a URI or
+     * template value (e.g. as a parameter value of another URI).
+     */
+    private void scanString(String value, Set<String> refs) {
+        if( value.length() < 2 ) {
+            return;
+        }
+        char prefix = value.charAt( 0 );
+        if( prefix == '#' ) {
+            refs.add( readName( value, 1 ) );
+        }
+        else if( prefix == '@' || prefix == '?' ) {
+            int idx = value.indexOf( NamedSchemePrefix );
+            while( idx > -1 ) {
+                idx += NamedSchemePrefix.length();
+                refs.add( readName( value, idx ) );
+                idx = value.indexOf( NamedSchemePrefix, idx );
+            }
+        }
+    }
+
+    /**
+     * Read the top-level name at the start of a reference.
+     * e.g. returns 'object' for the reference 'object.sub.property'.
+     */
+    private static String readName(String value, int start) {
+        int end = start;
+        while( end < value.length() ) {
+            char ch = value.charAt( end );
+            if( Character.isLetterOrDigit( ch ) || ch == '_' || ch == '-' ) {
+                end++;
+            }
+            else break;
+        }
+        return value.substring( start, end );
+    }
+}
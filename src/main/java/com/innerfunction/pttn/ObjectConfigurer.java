@@ -15,7 +15,6 @@ package com.innerfunction.pttn;
 
 import android.graphics.drawable.Drawable;
 import android.util.Log;
-import android.util.LruCache;
 
 import com.innerfunction.util.Property;
 
@@ -27,6 +26,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A class responsible for object configuration.
@@ -44,9 +44,9 @@ public class ObjectConfigurer {
     /** The container's properties. */
     private Properties containerProperties;
     /** Internal metrics: Number of properties (objects and primitives) configured. */
-    private int configuredPropertyCount = 0;
+    private AtomicInteger configuredPropertyCount = new AtomicInteger( 0 );
     /** Internal metrics: Number of objects (i.e non-primitives) configured. */
-    private int configuredObjectCount = 1;
+    private AtomicInteger configuredObjectCount = new AtomicInteger( 1 );
 
     /**
      * Initialize a configurer with its container.
@@ -101,17 +101,23 @@ public class ObjectConfigurer {
             for( String name : configuration.getValueNames() ) {
                 String propName = normalizePropertyName( name ); // Check for reserved names.
                 if( propName != null ) {
-                    // Build a property value from the configuration.
-                    Object value = buildPropertyValue( propName, properties, configuration, kpPrefix );
-                    // If property value then inject into the object property.
-                    if( value != null ) {
-                        injectPropertyValue( propName, properties, value );
+                    // Primitive typed properties are injected directly, where supported; all
+                    // other properties are built and then injected.
+                    boolean injected = properties instanceof PrimitiveProperties
+                        && injectPrimitivePropertyValue( propName, (PrimitiveProperties)properties, configuration );
+                    if( !injected ) {
+                        // Build a property value from the configuration.
+                        Object value = buildPropertyValue( propName, properties, configuration, kpPrefix );
+                        // If property value then inject into the object property.
+                        if( value != null ) {
+                            injectPropertyValue( propName, properties, value );
+                        }
                     }
-                    configuredPropertyCount++;
+                    configuredPropertyCount.incrementAndGet();
                 }
             }
         }
-        configuredObjectCount++;
+        configuredObjectCount.incrementAndGet();
         // Post configuration.
         if( object instanceof IOCConfigurationAware ) {
             Object objectKey = new ObjectKey( object );
@@ -125,6 +131,69 @@ public class ObjectConfigurer {
         container.doPostConfiguration( object );
     }
 
+    /**
+     * Try to inject a primitive property value directly from its configuration.
+     * Values are read using the configuration's primitive getters, and are then passed to the
+     * property setter as primitive values; i.e. without being boxed and passed through the
+     * generic setPropertyValue() method. Numbers and booleans already in the configuration data
+     * are read without allocating; string values still have to be parsed. Note that only
+     * generated properties classes set the value without boxing it; the reflection based
+     * ObjectProperties has to box the value in order to invoke the setter.
+     * @param propName      The name of the property being configured.
+     * @param properties    The properties of the object being configured.
+     * @param configuration The object configuration.
+     * @return true if the property has a primitive type and a value was injected; false if the
+     * property value should instead be built using buildPropertyValue(), including when the
+     * primitive setter fails (so that the value is set, or the failure reported, by the standard
+     * code path).
+     */
+    private boolean injectPrimitivePropertyValue(String propName, PrimitiveProperties properties, Configuration configuration) {
+        Class<?> propType = properties.getPropertyType( propName );
+        if( propType == null || !propType.isPrimitive() ) {
+            return false;
+        }
+        // NOTE The primitive getters can't report a missing or unconvertible value, so numbers are
+        // read with an unlikely default value; if that value is returned then the property is
+        // left to buildPropertyValue(), which handles all cases (including values which really
+        // are equal to the default).
+        if( propType == boolean.class ) {
+            if( !configuration.hasValue( propName ) ) {
+                return false;
+            }
+            return properties.setBooleanPropertyValue( propName, configuration.getValueAsBool( propName, false ) );
+        }
+        else if( propType == int.class ) {
+            int value = configuration.getValueAsInt( propName, Integer.MIN_VALUE );
+            if( value == Integer.MIN_VALUE ) {
+                return false;
+            }
+            return properties.setIntPropertyValue( propName, value );
+        }
+        else if( propType == long.class ) {
+            long value = configuration.getValueAsLong( propName, Long.MIN_VALUE );
+            if( value == Long.MIN_VALUE ) {
+                return false;
+            }
+            return properties.setLongPropertyValue( propName, value );
+        }
+        else if( propType == float.class ) {
+            float value = configuration.getValueAsFloat( propName, Float.NaN );
+            if( Float.isNaN( value ) ) {
+                return false;
+            }
+            return properties.setFloatPropertyValue( propName, value );
+        }
+        else if( propType == double.class ) {
+            double value = configuration.getValueAsDouble( propName, Double.NaN );
+            if( Double.isNaN( value ) ) {
+                return false;
+            }
+            return properties.setDoublePropertyValue( propName, value );
+        }
+        // Other primitive types are configured using the standard code path.
+        return false;
+    }
+
     /**
      * Try to build a property value from its configuration.
      * TODO: Rename this to 'resolvePropertyValue' - because sometimes in-place values are returned.
@@ -154,6 +223,9 @@ public class ObjectConfigurer {
             break;
         case Number:
             Number number = configuration.getValueAsNumber( propName );
+            if( number == null ) {
+                break;
+            }
             if( propType == int.class || propType == Integer.class ) {
                 value = number.intValue();
             }
@@ -163,6 +235,9 @@ public class ObjectConfigurer {
             else if( propType == double.class || propType == Double.class ) {
                 value = number.doubleValue();
             }
+            else if( propType == long.class || propType == Long.class ) {
+                value = number.longValue();
+            }
             else {
                 value = number;
             }
@@ -307,7 +382,7 @@ public class ObjectConfigurer {
                 // assignments.
                 if( !isAssignableBoolean && value instanceof Number ) {
                     isAssignableNumeric
-                        = (propType == int.class || propType == float.class || propType == double.class);
+                        = (propType == int.class || propType == float.class || propType == double.class || propType == long.class);
                 }
                 if( propType.isAssignableFrom( value.getClass() ) || isAssignableBoolean || isAssignableNumeric ) {
                     // Standard object property reference.
@@ -328,7 +403,21 @@ public class ObjectConfigurer {
         if( object instanceof Map ) {
             return new MapProperties( (Map<Object,?>)object, memberType );
         }
-        return new ObjectProperties( object );
+        // Use the properties generated for an @IOCConfigurable class, if available.
+        IOCClassInfo classInfo = IOCClassInfo.forClass( object.getClass() );
+        PropertiesFactory propertiesFactory = classInfo.getGeneratedPropertiesFactory();
+        if( propertiesFactory != null ) {
+            return propertiesFactory.getProperties( object );
+        }
+        // Use the build time compiled properties for the object's class, if available.
+        IOCCompiledTypes compiledTypes = Container.getCompiledTypes();
+        if( compiledTypes != null ) {
+            Properties properties = compiledTypes.getProperties( object );
+            if( properties != null ) {
+                return properties;
+            }
+        }
+        return new ObjectProperties( object, classInfo.getProperties() );
     }
 
     /**
@@ -362,12 +451,6 @@ public class ObjectConfigurer {
         return prefix.length() > 0 ? prefix+"."+name : "#"+name;
     }
 
-    /**
-     * A cache of classes to standard types.
-     * Used to cache the results of getStandardTypeForClass(..).
-     */
-    static final LruCache<Class,StandardTypes> StandardTypesByClass = new LruCache<>( 50 );
-
     /** Enumeration of standard configuration types. */
     public enum StandardTypes { Boolean, Number, String, Date, Drawable, Configuration, JSONData, Other };
 
@@ -376,57 +459,55 @@ public class ObjectConfigurer {
      * The standard types are an optimization to the core configuration cycle. Before each property
      * is configured, the configurer checks whether the property type is one of the standard
      * primitive types (listed above). This potentially requires multiple isAssignableFrom() tests,
-     * which this code attempts to optimize by cacheing the test result for each class.
-     * NOTE: Need for this code should be reviewed; it's contribution to the performance of the
-     * configuration code is probably minimal; on the other hand, it maybe? contributes to code
-     * readability.
+     * which this code attempts to optimize by cacheing the test result for each class in the
+     * class info registry.
      */
     static final StandardTypes getStandardTypeForClass(Class<?> clss) {
-        StandardTypes stdType = StandardTypesByClass.get( clss );
-        if( stdType == null ) {
-            if( clss == Object.class ) {
-                stdType = StandardTypes.Other;
-            }
-            else if( clss == boolean.class || clss.isAssignableFrom( Boolean.class ) ) {
-                stdType = StandardTypes.Boolean;
-            }
-            else if( Number.class.isAssignableFrom( clss )
-                || clss == int.class
-                || clss == double.class
-                || clss == float.class) {
-                stdType = StandardTypes.Number;
-            }
-            else if( clss.isAssignableFrom( String.class ) ) {
-                stdType = StandardTypes.String;
-            }
-            else if( clss.isAssignableFrom( Date.class ) ) {
-                stdType = StandardTypes.Date;
-            }
-            else if( clss.isAssignableFrom( Drawable.class ) ) {
-                stdType = StandardTypes.Drawable;
-            }
-            else if( clss.isAssignableFrom( Configuration.class ) ) {
-                stdType = StandardTypes.Configuration;
-            }
-            else if( clss == JSONObject.class || clss == JSONArray.class ) {
-                stdType = StandardTypes.JSONData;
-            }
-            else {
-                stdType = StandardTypes.Other;
-            }
-            synchronized( StandardTypesByClass ) {
-                StandardTypesByClass.put( clss, stdType );
-            }
+        return IOCClassInfo.forClass( clss ).getStandardType();
+    }
+
+    /**
+     * Resolve the standard type value for a class.
+     * @see #getStandardTypeForClass(Class)
+     */
+    static StandardTypes resolveStandardTypeForClass(Class<?> clss) {
+        if( clss == Object.class ) {
+            return StandardTypes.Other;
+        }
+        if( clss == boolean.class || clss.isAssignableFrom( Boolean.class ) ) {
+            return StandardTypes.Boolean;
+        }
+        if( Number.class.isAssignableFrom( clss )
+            || clss == int.class
+            || clss == long.class
+            || clss == double.class
+            || clss == float.class) {
+            return StandardTypes.Number;
+        }
+        if( clss.isAssignableFrom( String.class ) ) {
+            return StandardTypes.String;
         }
-        return stdType;
+        if( clss.isAssignableFrom( Date.class ) ) {
+            return StandardTypes.Date;
+        }
+        if( clss.isAssignableFrom( Drawable.class ) ) {
+            return StandardTypes.Drawable;
+        }
+        if( clss.isAssignableFrom( Configuration.class ) ) {
+            return StandardTypes.Configuration;
+        }
+        if( clss == JSONObject.class || clss == JSONArray.class ) {
+            return StandardTypes.JSONData;
+        }
+        return StandardTypes.Other;
     }
 
     public int getConfiguredPropertyCount() {
-        return configuredPropertyCount;
+        return configuredPropertyCount.get();
     }
 
     public int getConfiguredObjectCount() {
-        return configuredObjectCount;
+        return configuredObjectCount.get();
     }
 
     /**
@@ -446,18 +527,48 @@ public class ObjectConfigurer {
         boolean setPropertyValue(String name, T value);
     }
 
+    /**
+     * An interface for setting primitive property values.
+     * Implemented by the properties generated for @IOCConfigurable classes and compiled types,
+     * which pass primitive values directly to an object's property setters without boxing; and
+     * by ObjectProperties, which boxes the value to invoke the setter using reflection.
+     */
+    public interface PrimitiveProperties<T> extends Properties<T> {
+        /** Set a named int property value. */
+        boolean setIntPropertyValue(String name, int value);
+        /** Set a named long property value. */
+        boolean setLongPropertyValue(String name, long value);
+        /** Set a named float property value. */
+        boolean setFloatPropertyValue(String name, float value);
+        /** Set a named double property value. */
+        boolean setDoublePropertyValue(String name, double value);
+        /** Set a named boolean property value. */
+        boolean setBooleanPropertyValue(String name, boolean value);
+    }
+
+    /**
+     * A factory for an object's properties.
+     * Implemented by the classes generated for @IOCConfigurable classes.
+     */
+    public interface PropertiesFactory {
+        /** Get the properties of an object. */
+        Properties getProperties(Object object);
+    }
+
     /**
      * A class encapsulating information about an object's properties.
+     * Note that properties are set using reflection, so primitive property values are boxed
+     * when passed to the property setter.
      */
-     static class ObjectProperties implements Properties {
+     static class ObjectProperties implements PrimitiveProperties {
         /** The property owner. */
         Object object;
         /** The named properties of the owner. */
         Map<String,Property> properties;
 
-        ObjectProperties(Object object) {
+        ObjectProperties(Object object, Map<String,Property> properties) {
             this.object = object;
-            this.properties = Property.getPropertiesForObject( object );
+            this.properties = properties;
         }
         @Override
         public Object getPropertyOwner() {
@@ -493,6 +604,31 @@ public class ObjectConfigurer {
             }
             return false;
         }
+        @Override
+        public boolean setIntPropertyValue(String name, int value) {
+            Property property = properties.get( name );
+            return property != null && property.set( object, value );
+        }
+        @Override
+        public boolean setLongPropertyValue(String name, long value) {
+            Property property = properties.get( name );
+            return property != null && property.set( object, value );
+        }
+        @Override
+        public boolean setFloatPropertyValue(String name, float value) {
+            Property property = properties.get( name );
+            return property != null && property.set( object, value );
+        }
+        @Override
+        public boolean setDoublePropertyValue(String name, double value) {
+            Property property = properties.get( name );
+            return property != null && property.set( object, value );
+        }
+        @Override
+        public boolean setBooleanPropertyValue(String name, boolean value) {
+            Property property = properties.get( name );
+            return property != null && property.set( object, value );
+        }
     }
 
     /**
@@ -545,7 +681,7 @@ public class ObjectConfigurer {
         Container container;
 
         ContainerProperties(Container container) {
-            super( container );
+            super( container, IOCClassInfo.forClass( container.getClass() ).getProperties() );
             this.container = container;
         }
         @Override
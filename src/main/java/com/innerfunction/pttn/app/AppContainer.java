@@ -41,6 +41,7 @@ import com.innerfunction.util.I18nMap;
 import com.innerfunction.util.UserDefaults;
 
 import java.net.URISyntaxException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -201,8 +202,9 @@ public class AppContainer extends Container {
     @Override
     public void configureWith(Configuration configuration) {
 
-        // Setup template context.
-        this.globals = makeDefaultGlobalModelValues( configuration );
+        // Setup template context. Note that the context is shared by all configurations derived
+        // from the container configuration, and may be updated by multiple build threads.
+        this.globals = Collections.synchronizedMap( makeDefaultGlobalModelValues( configuration ) );
         configuration.setContext( globals );
 
         // Set object type mappings.
@@ -550,7 +552,7 @@ public class AppContainer extends Container {
      * Start a new activity to display the app's root view.
      */
     public void showRootView() {
-        Object rootView = nameds.get("rootView");
+        Object rootView = getNamed("rootView");
         if( rootView != null ) {
             showView( rootView );
         }
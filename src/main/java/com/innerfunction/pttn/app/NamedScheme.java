@@ -45,7 +45,8 @@ public class NamedScheme implements URIScheme {
             path = name.substring( idx + 1 );
             name = name.substring( 0, idx );
         }
-        // Get the named object.
+        // Get the named object. Note that this will build the named object if it is configured
+        // as lazy and hasn't been accessed before.
         Object result = container.getNamed( name );
         // If a path is specified then evaluate that on the named object.
         if( result != null && path != null ) {
@@ -66,8 +66,12 @@ public class Q {
                 .then(new Promise.Callback<R, Object>() {
                     @Override
                     public R result(R result) {
-                        dset.results.add(result);
-                        if (dset.results.size() == deferreds.size()) {
+                        boolean complete;
+                        synchronized (dset) {
+                            dset.results.add(result);
+                            complete = dset.results.size() == deferreds.size();
+                        }
+                        if (complete) {
                             dresult.resolve(dset.results);
                         }
                         return result;
@@ -223,17 +227,20 @@ public class Q {
          * @param result
          */
         public void resolve(T result) {
-            if (!(resolved || rejected)) {
-                try {
-                    resolved = true;
-                    this.result = result;
-                    if (continuation != null) {
-                        continuation.resolve(result);
-                    }
-                }
-                catch (Exception e) {
-                    reject(e);
+            Continuation<T, ?> continuation;
+            // Note that promises may be resolved and have callbacks added on different threads,
+            // so changes to the promise state are synchronized; callbacks are invoked outside
+            // of the lock.
+            synchronized (this) {
+                if (resolved || rejected) {
+                    return;
                 }
+                resolved = true;
+                this.result = result;
+                continuation = this.continuation;
+            }
+            if (continuation != null) {
+                continuation.resolve(result);
             }
         }
 
@@ -270,15 +277,22 @@ public class Q {
          * @param e
          */
         public void reject(Exception e) {
-            if (!(resolved || rejected)) {
+            ErrorCallback errCallback;
+            Continuation<T, ?> continuation;
+            synchronized (this) {
+                if (resolved || rejected) {
+                    return;
+                }
                 rejected = true;
                 error = e;
-                if (errCallback != null) {
-                    errCallback.error(e);
-                }
-                else if (continuation != null) {
-                    continuation.reject(e);
-                }
+                errCallback = this.errCallback;
+                continuation = this.continuation;
+            }
+            if (errCallback != null) {
+                errCallback.error(e);
+            }
+            else if (continuation != null) {
+                continuation.reject(e);
             }
         }
 
@@ -294,6 +308,13 @@ public class Q {
          */
         public <R> Promise<R> then(ICallback<T, R> cb) {
             Promise<R> next = new Promise<>();
+            synchronized( this ) {
+                if( !(resolved || rejected) ) {
+                    // Promise is neither resolved nor rejected, copy the callback for later usage.
+                    continuation = new Continuation<>( cb, next );
+                    return next;
+                }
+            }
             if( resolved ) {
                 // Current promise is already resolved, so immediately invoke the callback.
                 try {
@@ -313,10 +334,6 @@ public class Q {
                 // next promise.
                 next.reject( error );
             }
-            else {
-                // Promise is neither resolved nor rejected, copy the callback for later usage.
-                continuation = new Continuation<>( cb, next );
-            }
             return next;
         }
 
@@ -327,12 +344,15 @@ public class Q {
          * @return
          */
         public Promise<T> error(ErrorCallback cb) {
+            synchronized( this ) {
+                if( !(resolved || rejected) ) {
+                    errCallback = cb;
+                    return this;
+                }
+            }
             if( rejected ) {
                 cb.error( error );
             }
-            else if( !resolved ) {
-                errCallback = cb;
-            }
             return this;
         }
 
@@ -44,6 +44,8 @@ public class AnRBasedScheme extends FileBasedScheme {
         this.r = context.getResources();
         this.packageName = context.getPackageName();
         this.assets = assets;
+        // App resources and assets are packaged with the app and can't change.
+        setCachePolicy( URICachePolicy.Immutable );
     }
 
     @Override
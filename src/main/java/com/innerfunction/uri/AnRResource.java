@@ -19,6 +19,7 @@ import android.graphics.drawable.Drawable;
 import android.util.Log;
 
 import com.innerfunction.util.Assets;
+import com.innerfunction.util.ConfigurationBundle;
 import com.innerfunction.util.Files;
 import com.innerfunction.util.Paths;
 
@@ -27,6 +28,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 
 /**
  * Class representing a resource in the app's assets or res directories.
@@ -54,7 +56,18 @@ public class AnRResource extends FileResource {
     }
 
     @Override
-    public byte[] asData() {
+    protected boolean isImmutable() {
+        return true; // App assets and resources can't change after the app is installed.
+    }
+
+    @Override
+    public ByteBuffer asByteBuffer() {
+        byte[] data = getSharedData();
+        return data != null ? ByteBuffer.wrap( data ).asReadOnlyBuffer() : null;
+    }
+
+    @Override
+    protected byte[] readData() {
         try {
             return Files.readData( openInputStream(), this.assetName );
         }
@@ -85,11 +98,22 @@ public class AnRResource extends FileResource {
             return r.openRawResource( resourceID );
         }
 
+        @Override
+        protected String getContentKey() {
+            return "res:"+resourceID;
+        }
+
         @Override
         public String asString() {
             return r.getString( resourceID );
         }
 
+        @Override
+        protected Object readJSONData() {
+            // JSON is read from the resource's string value.
+            return getTypeConversions().asJSONData( asString() );
+        }
+
         @Override
         public URI asURL() {
             // NOTE resources can only be loaded by URL from the assets folder.
@@ -127,7 +151,37 @@ public class AnRResource extends FileResource {
         }
 
         @Override
-        public String asString() {
+        protected String getContentKey() {
+            return "asset:"+getAssetName();
+        }
+
+        /**
+         * Read the asset's JSON data.
+         * Uses the compiled form of the asset from the app's configuration bundle, if available.
+         * The bundle is only regenerated when the app's Java code is compiled, so the compiled
+         * form is only used if it was generated from the asset's current contents.
+         */
+        @Override
+        protected Object readJSONData() {
+            ConfigurationBundle bundle = assets.getConfigurationBundle();
+            String assetName = getAssetName();
+            if( bundle != null && bundle.hasDocument( assetName ) ) {
+                try {
+                    Object data = bundle.getDocument( assetName, assets.mapAsset( assetName ) );
+                    if( data != null ) {
+                        return data;
+                    }
+                    Log.w( LogTag, String.format("Configuration bundle is out of date for %s", assetName ) );
+                }
+                catch(IOException e) {
+                    Log.e( LogTag, String.format("Reading %s", assetName ), e );
+                }
+            }
+            return super.readJSONData();
+        }
+
+        @Override
+        protected String readString() {
             String s = null;
             try {
                 s = Files.readString( openInputStream(), getAssetName() );
@@ -158,7 +212,7 @@ public class AnRResource extends FileResource {
          * app's resource bundle.
          */
         @Override
-        public Drawable asImage() {
+        protected Drawable readImage() {
             Drawable image = null;
             try {
                 image = Drawable.createFromStream( openInputStream(), getAssetName() );
@@ -0,0 +1,31 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.uri;
+
+/**
+ * An interface implemented by URI scheme handlers whose dereferenced values can be cached.
+ * URI handlers with an enabled dereference cache (@see URIDereferenceCache) will cache the values
+ * of URIs in schemes implementing this interface, according to the scheme's cache policy. URIs in
+ * schemes which don't implement this interface are never cached.
+ */
+public interface CacheableURIScheme extends URIScheme {
+
+    /**
+     * Get the scheme's cache policy.
+     * The policy applies to the value returned by the scheme handler's dereference method; note
+     * that a URI is only cached if the URIs of all of its parameters are also cacheable.
+     */
+    URICachePolicy getCachePolicy();
+
+}
@@ -15,7 +15,7 @@ package com.innerfunction.uri;
 
 import android.net.Uri;
 
-import com.innerfunction.util.Regex;
+import android.util.LruCache;
 
 import java.net.URISyntaxException;
 import java.util.ArrayList;
@@ -41,96 +41,114 @@ import java.util.Map;
  *         LITERAL ::= (name characters)+
  *          FORMAT ::= (name characters)+
  *
+ * Compound URIs are immutable; parsed URIs are cached and may be shared by any number of users.
+ *
  * Attached by juliangoacher on 25/03/16.
  */
 public class CompoundURI {
 
+    /** The maximum number of parsed URIs cached by the parse() method. */
+    static final int CacheSize = 500;
+
+    /** A cache of previously parsed URIs, keyed by URI string. */
+    static final LruCache<String,CompoundURI> ParsedURIs = new LruCache<>( CacheSize );
+
     /** The URI scheme name. */
-    private String scheme;
+    private final String scheme;
     /** The name part of the URI. */
-    private String name;
+    private final String name;
     /** The fragment part of the URI. */
-    private String fragment;
+    private final String fragment;
     /**
      * A map of the URI's parameters keyed by parameter name.
      * Each map entry maps the parameter name to a URI representing the value. (Note that all
      * parameter values can be represented as URIs; literal values are represented using
      * the <i>s:</i> scheme.
+     * The map is unmodifiable.
      */
-    private Map<String,CompoundURI> parameters = new HashMap<>();
+    private final Map<String,CompoundURI> parameters;
     /** The format part of the URI. */
-    private String format;
+    private final String format;
+    /** The URI's hash code, calculated from the URI parts when the URI is created. */
+    private final int hashCode;
     /**
      * A cached copy of the URIs canonical form. See canonicalForm().
      */
-    private String _canonicalForm;
+    private volatile String _canonicalForm;
+
+    /** Instantiate a new compound URI from its parts. */
+    private CompoundURI(String scheme, String name, String fragment, Map<String,CompoundURI> parameters, String format) {
+        this.scheme = scheme;
+        this.name = name;
+        this.fragment = fragment;
+        this.parameters = parameters;
+        this.format = format;
+        this.hashCode = hashCode( scheme, name, fragment, parameters, format );
+    }
 
     /** Instantiate a new compound URI from the parsed AST. */
-    private CompoundURI(ASTNode ast) throws URISyntaxException {
-        initialize( ast );
+    private CompoundURI(ASTNode ast) {
+        this( ast.scheme, ast.name, ast.fragment, parametersFromAST( ast ), ast.format );
     }
 
     /**
-     * Instantiate a new compound URI by parsing the provided string.
+     * Parse a compound URI string.
      * @param input A string containing a compound URI representation.
+     * @return The parsed URI.
      * @throws URISyntaxException If the string isn't a valid URI.
      */
-    private CompoundURI(String input) throws URISyntaxException {
+    private static CompoundURI parseInput(String input) throws URISyntaxException {
+        Parser parser = new Parser( input );
         ASTNode ast = new ASTNode();
-        ast.__input = input;
-        if( parseCompoundURI( input, ast ) ) {
-            String trailing = ast.__trailing;
-            if( trailing != null && trailing.length() > 0 ) {
-                int location = input.length() - trailing.length();
-                throw new URISyntaxException( input, "Trailing characters after URI", location );
+        if( parser.hasLineTerminator() ) {
+            // Line terminators aren't valid anywhere in a URI.
+            throw new URISyntaxException( input, "Unable to parse URI", 0 );
+        }
+        if( parser.parseCompoundURI( ast ) ) {
+            if( parser.pos < input.length() ) {
+                // Report any error which stopped the parser before the end of the input.
+                if( parser.error != null ) {
+                    throw new URISyntaxException( input, parser.error, parser.errorLocation );
+                }
+                throw new URISyntaxException( input, "Trailing characters after URI", parser.pos );
             }
-            initialize(ast);
+            return new CompoundURI( ast );
         }
-        else if( ast.__error != null ) {
-            throw new URISyntaxException( input, ast.__error, ast.__error_location );
+        else if( parser.error != null ) {
+            throw new URISyntaxException( input, parser.error, parser.errorLocation );
         }
         else {
             throw new URISyntaxException( input, "Unable to parse URI", 0 );
         }
     }
 
-    /** Initialize the compound URI instance form the specified AST. */
-    private void initialize(ASTNode ast) throws URISyntaxException {
-        if( ast.__error != null ) {
-            throw new URISyntaxException( ast.__input, ast.__error, ast.__error_location );
+    /** Create a URI parameter map from the parameters in a parsed AST. */
+    private static Map<String,CompoundURI> parametersFromAST(ASTNode ast) {
+        if( ast.parameters == null || ast.parameters.size() == 0 ) {
+            return Collections.emptyMap();
         }
-        this.scheme = ast.scheme;
-        this.name = ast.name;
-        this.fragment = ast.fragment;
-        this.format = ast.format;
-        if( ast.parameters != null ) {
-            for( ASTNode param_ast : ast.parameters ) {
-                String paramName = param_ast.param_name;
-                if( paramName != null ) {
-                    CompoundURI paramValue = new CompoundURI( param_ast );
-                    parameters.put( paramName, paramValue );
-                }
+        Map<String,CompoundURI> parameters = new HashMap<>();
+        for( ASTNode param_ast : ast.parameters ) {
+            String paramName = param_ast.param_name;
+            if( paramName != null ) {
+                CompoundURI paramValue = new CompoundURI( param_ast );
+                parameters.put( paramName, paramValue );
             }
         }
+        return Collections.unmodifiableMap( parameters );
     }
 
     /**
      * Instantiate a new compound URI as a copy of another URI.
-     * Copies all URI parts to the new URI. Makes a copy of the parameter map so that changes
-     * to parameters on the original URI don't affect the copy.
+     * Copies all URI parts to the new URI.
      */
     public CompoundURI(CompoundURI uri) {
-        this.scheme = uri.scheme;
-        this.name = uri.name;
-        this.fragment = uri.fragment;
-        this.parameters = new HashMap<>( uri.parameters );
-        this.format = uri.format;
+        this( uri.scheme, uri.name, uri.fragment, uri.parameters, uri.format );
     }
 
     /** Instantiate a new compound URI with the specified scheme and name values. */
     public CompoundURI(String scheme, String name) {
-        this.scheme = scheme;
-        this.name = name;
+        this( scheme, name, null, Collections.<String,CompoundURI>emptyMap(), null );
     }
 
     /**
@@ -139,8 +157,7 @@ public class CompoundURI {
      * @param uri       The URI to copy.
      */
     public CompoundURI(String scheme, CompoundURI uri) {
-        this( uri );
-        this.scheme = scheme;
+        this( scheme, uri.name, uri.fragment, uri.parameters, uri.format );
     }
 
     public String getScheme() {
@@ -155,23 +172,18 @@ public class CompoundURI {
         return fragment;
     }
 
+    /** Get the URI's parameters. The result is unmodifiable. */
     public Map<String,CompoundURI> getParameters() {
         return parameters;
     }
 
-    /**
-     * Add a set of parameters to the ones already on this URI.
-     * Overwrites any parameters of the same name.
-     * @param parameters    A set of additional parameters.
-     */
-    public void addParameters(Map<String,CompoundURI> parameters) {
-        this.parameters.putAll( parameters );
-        _canonicalForm = null;
-    }
-
     public String getFormat() { return format; }
 
-    /** Return a copy of the current URI. */
+    /**
+     * Return a copy of the current URI.
+     * Note that because URIs are immutable, the copy is only needed when a distinct instance
+     * is required.
+     */
     public CompoundURI copyOf() {
         return new CompoundURI( this );
     }
@@ -181,9 +193,7 @@ public class CompoundURI {
      * @param fragment  The fragment part for the new URI.
      */
     public CompoundURI copyOfWithFragment(String fragment) {
-        CompoundURI copy = new CompoundURI( this );
-        copy.fragment = fragment;
-        return copy;
+        return new CompoundURI( scheme, name, fragment, parameters, format );
     }
 
     /**
@@ -191,9 +201,18 @@ public class CompoundURI {
      * @param name  The name part for the new URI.
      */
     public CompoundURI copyOfWithName(String name) {
-        CompoundURI copy = new CompoundURI( this );
-        copy.name = name;
-        return copy;
+        return new CompoundURI( scheme, name, fragment, parameters, format );
+    }
+
+    /**
+     * Return a copy of the current URI with a set of parameters added to its parameters.
+     * The additional parameters overwrite any parameters of the same name.
+     * @param parameters    A set of additional parameters.
+     */
+    public CompoundURI copyOfWithParameters(Map<String,CompoundURI> parameters) {
+        Map<String,CompoundURI> newParameters = new HashMap<>( this.parameters );
+        newParameters.putAll( parameters );
+        return new CompoundURI( scheme, name, fragment, Collections.unmodifiableMap( newParameters ), format );
     }
 
     /**
@@ -207,27 +226,39 @@ public class CompoundURI {
      * </ul>
      * Note that two URIs parsed initially from different string representations may share the same
      * canonical form if they are semantically identical.
+     * The canonical form is generated the first time it is requested.
      * @return A string containing the current URIs canonical form.
      */
     public String canonicalForm() {
-        if( _canonicalForm == null ) {
-            List<String> paramNames = new ArrayList<>(parameters.keySet());
-            Collections.sort(paramNames);
-            StringBuilder serializedParams = new StringBuilder();
-            for (String paramName : paramNames) {
-                CompoundURI paramValue = parameters.get(paramName);
-                serializedParams.append('+');
-                serializedParams.append(Uri.encode(paramName));
-                serializedParams.append("@[");
-                serializedParams.append(paramValue.canonicalForm());
-                serializedParams.append(']');
+        String canonicalForm = _canonicalForm;
+        if( canonicalForm == null ) {
+            StringBuilder sb = new StringBuilder();
+            sb.append( Uri.encode( scheme ) );
+            sb.append(':');
+            sb.append( Uri.encode( name ) );
+            if( fragment != null ) {
+                sb.append('#');
+                sb.append( Uri.encode( fragment ) );
             }
-            String frag = this.fragment == null ? "" : String.format("#%s", Uri.encode(this.fragment));
-            String form = this.format == null ? "" : String.format("|%s", Uri.encode(this.format));
-            _canonicalForm = String.format("%s:%s%s%s",
-                Uri.encode(scheme), Uri.encode(name), frag, serializedParams, form);
+            if( parameters.size() > 0 ) {
+                List<String> paramNames = new ArrayList<>( parameters.keySet() );
+                Collections.sort( paramNames );
+                for( String paramName : paramNames ) {
+                    CompoundURI paramValue = parameters.get( paramName );
+                    sb.append('+');
+                    sb.append( Uri.encode( paramName ) );
+                    sb.append("@[");
+                    sb.append( paramValue.canonicalForm() );
+                    sb.append(']');
+                }
+            }
+            if( format != null ) {
+                sb.append('|');
+                sb.append( Uri.encode( format ) );
+            }
+            canonicalForm = _canonicalForm = sb.toString();
         }
-        return _canonicalForm;
+        return canonicalForm;
     }
 
     /** Returns the URI's canonical representation. */
@@ -235,21 +266,56 @@ public class CompoundURI {
         return canonicalForm();
     }
 
-    /** Returns the hash code of the URI's canonical representation. */
+    /**
+     * Returns the URI's hash code.
+     * The hash code is calculated from the URI's parts when the URI is created.
+     */
     public int hashCode() {
-        return toString().hashCode();
+        return hashCode;
     }
 
     /**
      * Compare for equality.
      * A compound URI is equal to another object if that object is also a compound URI, and if their
-     * respective canonical forms are identical.
+     * respective parts are equal (which is equivalent to their canonical forms being identical).
      * @param obj   An object to compare for equality.
      * @return Returns true if <i>obj</i> represents a compound URI which is semantically identical
      * to the current URI.
      */
     public boolean equals(Object obj) {
-        return obj instanceof CompoundURI && toString().equals( obj.toString() );
+        if( obj == this ) {
+            return true;
+        }
+        if( !(obj instanceof CompoundURI) ) {
+            return false;
+        }
+        CompoundURI uri = (CompoundURI)obj;
+        return hashCode == uri.hashCode
+            && equals( scheme, uri.scheme )
+            && equals( name, uri.name )
+            && equals( fragment, uri.fragment )
+            && equals( format, uri.format )
+            && parameters.equals( uri.parameters );
+    }
+
+    /** Calculate the hash code of a set of URI parts. */
+    private static int hashCode(String scheme, String name, String fragment, Map<String,CompoundURI> parameters, String format) {
+        int hash = hashCode( scheme );
+        hash = 31 * hash + hashCode( name );
+        hash = 31 * hash + hashCode( fragment );
+        // Note that the parameters' hash code is calculated from the (precalculated) hash codes
+        // of the parameter values.
+        hash = 31 * hash + parameters.hashCode();
+        hash = 31 * hash + hashCode( format );
+        return hash;
+    }
+
+    private static int hashCode(String s) {
+        return s == null ? 0 : s.hashCode();
+    }
+
+    private static boolean equals(String s0, String s1) {
+        return s0 == null ? s1 == null : s0.equals( s1 );
     }
 
     /**
@@ -259,7 +325,12 @@ public class CompoundURI {
      * @throws URISyntaxException If the input isn't a valid URI.
      */
     public static CompoundURI parse(String input) throws URISyntaxException {
-        return new CompoundURI( input );
+        CompoundURI uri = ParsedURIs.get( input );
+        if( uri == null ) {
+            uri = parseInput( input );
+            ParsedURIs.put( input, uri );
+        }
+        return uri;
     }
 
     /**
@@ -276,210 +347,275 @@ public class CompoundURI {
 
     /** A node of the AST produced when parsing a URI. */
     private static class ASTNode {
-        String __input;
-        String __trailing;
-        String __error;
-        int __error_location;
         String scheme;
         String name;
         String fragment;
         String param_name;
         List<ASTNode> parameters;
         String format;
-        /** Make a child of the current node. */
-        ASTNode makeChildNode() {
-            ASTNode child = new ASTNode();
-            child.__input = this.__input;
-            return child;
-        }
-        /** Record an error message at the specified input. */
-        void recordError(String message, String input) {
-            this.__error = message;
-            this.__error_location = this.__input.length() - input.length();
-        }
     }
 
-    // COMPOUND_URI ::= ( BRACKETED_URI | ALIAS_OR_URI )
-    private boolean parseCompoundURI(String input, ASTNode ast) {
-        return parseBracketedURI( input, ast ) || parseAliasOrURI( input, ast );
-    }
+    /**
+     * A recursive descent URI parser.
+     * The parser reads the input string using a cursor, so no substrings are created other than
+     * for the parts of the URI being parsed. Each parse method returns true, with the cursor
+     * positioned after the parsed item, if the item is successfully parsed; otherwise returns
+     * false with the cursor unchanged.
+     */
+    private static final class Parser {
+        /** The string being parsed. */
+        final String input;
+        /** The length of the input. */
+        final int length;
+        /** The current parse position. */
+        int pos = 0;
+        /** The last error recorded by the parser. */
+        String error;
+        /** The location of the last error. */
+        int errorLocation;
+
+        Parser(String input) {
+            this.input = input;
+            this.length = input.length();
+        }
 
-    // BRACKETED_URI ::= '[' PLAIN_URI ']'
-    private boolean parseBracketedURI(String input, ASTNode ast) {
-        if( firstChar( input ) == '[' ) {
-            input = input.substring( 1 );
-            if( parseURI( input, ast ) ) {
-                input = ast.__trailing;
-                if( firstChar( input ) == ']') {
-                    ast.__trailing = input.substring( 1 );
+        /** Test whether the input contains any line terminator characters. */
+        boolean hasLineTerminator() {
+            for( int i = 0; i < length; i++ ) {
+                switch( input.charAt( i ) ) {
+                case '\n':
+                case '\r':
+                case '\u0085':
+                case '\u2028':
+                case '\u2029':
                     return true;
                 }
-                else {
-                    ast.recordError("Missing closing ]", input );
+            }
+            return false;
+        }
+
+        /**
+         * Return the character at the current parse position.
+         * Returns 0x00 at the end of the input.
+         */
+        char peek() {
+            return pos < length ? input.charAt( pos ) : 0x00;
+        }
+
+        /** Record an error message at the current parse position. */
+        void recordError(String message) {
+            this.error = message;
+            this.errorLocation = pos;
+        }
+
+        // COMPOUND_URI ::= ( BRACKETED_URI | ALIAS_OR_URI )
+        boolean parseCompoundURI(ASTNode ast) {
+            return parseBracketedURI( ast ) || parseAliasOrURI( ast );
+        }
+
+        // BRACKETED_URI ::= '[' PLAIN_URI ']'
+        boolean parseBracketedURI(ASTNode ast) {
+            if( peek() == '[' ) {
+                int start = pos++;
+                if( parseURI( ast ) ) {
+                    if( peek() == ']' ) {
+                        pos++;
+                        return true;
+                    }
+                    else {
+                        recordError("Missing closing ]");
+                    }
                 }
+                pos = start;
             }
+            return false;
         }
-        return false;
-    }
 
-    // ALIAS_OR_URI ::= ( '~' ALIAS | URI )
-    private boolean parseAliasOrURI(String input, ASTNode ast) {
-        return parseAlias( input, ast ) || parseURI( input, ast );
-    }
+        // ALIAS_OR_URI ::= ( '~' ALIAS | URI )
+        boolean parseAliasOrURI(ASTNode ast) {
+            return parseAlias( ast ) || parseURI( ast );
+        }
 
-    // ALIAS ::= '~' NAME ( '|' FORMAT )?
-    private boolean parseAlias(String input, ASTNode ast) {
-        if( firstChar( input ) == '~' ) {
-            input = input.substring( 1 );
-            if( parseName( input, ast ) ) {
-                input = ast.__trailing;
+        // ALIAS ::= '~' NAME ( '|' FORMAT )?
+        boolean parseAlias(ASTNode ast) {
+            if( peek() == '~' ) {
+                pos++;
+                parseName( ast );
                 // e.g. convert ~name => a:name
                 ast.scheme = "a";
-                if( parseFormat( input, ast ) ) {
-                    input = ast.__trailing;
-                }
+                parseFormat( ast );
                 return true;
             }
+            return false;
         }
-        return false;
-    }
 
-    // URI ::= SCHEME ':' NAME? ( '#' FRAGMENT )? PARAMETERS? ( '|' FORMAT )?
-    private boolean parseURI(String input, ASTNode ast) {
-        if( parseScheme( input, ast ) ) {
-            input = ast.__trailing;
-            if( firstChar( input ) == ':' ) {
-                input = input.substring( 1 );
-                if( parseName( input, ast ) ) {
-                    input = ast.__trailing;
-                }
-                if( firstChar( input ) == '#' ) {
-                    input = input.substring( 1 );
-                    if( parseFragment( input, ast ) ) {
-                        input = ast.__trailing;
+        // URI ::= SCHEME ':' NAME? ( '#' FRAGMENT )? PARAMETERS? ( '|' FORMAT )?
+        boolean parseURI(ASTNode ast) {
+            int start = pos;
+            if( parseScheme( ast ) ) {
+                if( peek() == ':' ) {
+                    pos++;
+                    parseName( ast );
+                    if( peek() == '#' ) {
+                        pos++;
+                        parseFragment( ast );
                     }
+                    ast.parameters = new ArrayList<>();
+                    ASTNode param_ast = new ASTNode();
+                    while( parseParameters( param_ast ) ) {
+                        ast.parameters.add( param_ast );
+                        param_ast = new ASTNode();
+                    }
+                    parseFormat( ast );
+                    return true;
                 }
-                ast.parameters = new ArrayList<>();
-                ASTNode param_ast = new ASTNode();
-                while( parseParameters( input, param_ast ) ) {
-                    ast.parameters.add( param_ast );
-                    input = param_ast.__trailing;
-                    param_ast = new ASTNode();
-                }
-                if( parseFormat( input, ast ) ) {
-                    input = ast.__trailing;
-                }
-                ast.__trailing = input;
-                return true;
+                pos = start;
             }
+            return false;
         }
-        return false;
-    }
 
-    // Match any word characters
-    private boolean parseScheme(String input, ASTNode ast) {
-        String[] groups = Regex.matches("^(\\w+)(.*)$", input );
-        if( groups != null && groups.length > 2 ) {
-            ast.scheme = groups[1];
-            ast.__trailing = groups[2];
-            return true;
+        // Match any word characters
+        boolean parseScheme(ASTNode ast) {
+            int end = pos;
+            while( end < length && isWordChar( input.charAt( end ) ) ) {
+                end++;
+            }
+            if( end > pos ) {
+                ast.scheme = input.substring( pos, end );
+                pos = end;
+                return true;
+            }
+            return false;
         }
-        return false;
-    }
 
-    // Match any word characters or . , / % kv ~ { } -
-    private boolean parseName(String input, ASTNode ast) {
-        String[] groups = Regex.matches("^([\\w.,/%kv~{}-]*)(.*)$", input );
-        if( groups != null && groups.length > 2 ) {
-            ast.name = groups[1];
-            ast.__trailing = groups[2];
-            return true;
+        // Match any word characters or . , / : % kv ~ { } -
+        void parseName(ASTNode ast) {
+            int end = pos;
+            while( end < length && isNameChar( input.charAt( end ) ) ) {
+                end++;
+            }
+            ast.name = input.substring( pos, end );
+            pos = end;
         }
-        return false;
-    }
 
-    // Match any word characters or . / % kv ~ -
-    private boolean parseFragment(String input, ASTNode ast) {
-        String[] groups = Regex.matches("^([\\w./%kv~-]*)(.*)$", input );
-        if( groups != null && groups.length > 2 ) {
-            ast.fragment = groups[1];
-            ast.__trailing = groups[2];
-            return true;
+        // Match any word characters or . / % kv ~ -
+        void parseFragment(ASTNode ast) {
+            int end = pos;
+            while( end < length && isFragmentChar( input.charAt( end ) ) ) {
+                end++;
+            }
+            ast.fragment = input.substring( pos, end );
+            pos = end;
         }
-        return false;
-    }
-
-    // PARAMETERS ::= '+' PARAM_NAME ( '@' URI | '=' LITERAL ) PARAMETERS*
-    private boolean parseParameters(String input, ASTNode ast) {
-        if( firstChar( input ) == '+' ) {
-            input = input.substring( 1 );
-            if( parseParamName( input, ast ) ) {
-                input = ast.__trailing;
-                char prefix = firstChar( input );
-                if( prefix == '@' ) {
-                    input = input.substring( 1 );
-                    return parseCompoundURI( input, ast );
-                }
-                else if( prefix == '=' ) {
-                    input = input.substring( 1 );
-                    if( parseParamLiteral( input, ast ) ) {
+
+        // PARAMETERS ::= '+' PARAM_NAME ( '@' URI | '=' LITERAL ) PARAMETERS*
+        boolean parseParameters(ASTNode ast) {
+            if( peek() == '+' ) {
+                int start = pos++;
+                if( parseParamName( ast ) ) {
+                    char prefix = peek();
+                    if( prefix == '@' ) {
+                        pos++;
+                        if( parseCompoundURI( ast ) ) {
+                            return true;
+                        }
+                    }
+                    else if( prefix == '=' ) {
+                        pos++;
+                        parseParamLiteral( ast );
                         // Convert the literal value to the AST for a string scheme URI.
                         // Note that the param literal value is placed into the 'name' property
                         // of the AST node.
                         ast.scheme = "s";
                         return true;
                     }
+                    else {
+                        recordError("Expected @ or =");
+                    }
                 }
-                else {
-                    ast.recordError("Expected @ or =", input );
+                pos = start;
+            }
+            return false;
+        }
+
+        // Match | followed by any format characters or . _ ~ -
+        boolean parseFormat(ASTNode ast) {
+            if( peek() == '|' ) {
+                int end = ++pos;
+                while( end < length && isFormatChar( input.charAt( end ) ) ) {
+                    end++;
                 }
+                ast.format = input.substring( pos, end );
+                pos = end;
+                return true;
             }
+            return false;
         }
-        return false;
-    }
 
-    // // Match | followed by any format characters or . _ ~ -
-    private boolean parseFormat(String input, ASTNode ast) {
-        if( firstChar( input ) == '|' ) {
-            input = input.substring( 1 );
-            String[] groups = Regex.matches("^([\\w\\._~-]*)(.*)$", input );
-            if( groups != null && groups.length > 2 ) {
-                ast.format = groups[1];
-                ast.__trailing = groups[2];
+        // Match an optional * prefix followed by any word characters or -
+        boolean parseParamName(ASTNode ast) {
+            int start = peek() == '*' ? pos + 1 : pos;
+            int end = start;
+            while( end < length && isParamNameChar( input.charAt( end ) ) ) {
+                end++;
+            }
+            if( end > start ) {
+                ast.param_name = input.substring( pos, end );
+                pos = end;
                 return true;
             }
+            return false;
+        }
+
+        // Match any characters which aren't + | or ]
+        void parseParamLiteral(ASTNode ast) {
+            int end = pos;
+            while( end < length && isLiteralChar( input.charAt( end ) ) ) {
+                end++;
+            }
+            ast.name = input.substring( pos, end );
+            pos = end;
         }
-        return false;
     }
 
-    // Match an optional * prefix followed by any word characters or -
-    private boolean parseParamName(String input, ASTNode ast) {
-        String[] groups = Regex.matches("^(\\*?[\\w-]+)(.*)$", input );
-        if( groups != null && groups.length > 2 ) {
-            ast.param_name = groups[1];
-            ast.__trailing = groups[2];
+    /** Test for a regex word character, i.e. [a-zA-Z_0-9]. */
+    static boolean isWordChar(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '_';
+    }
+
+    static boolean isNameChar(char ch) {
+        switch( ch ) {
+        case '.': case ',': case '/': case ':': case '%': case '~': case '{': case '}': case '-':
             return true;
+        default:
+            return isWordChar( ch );
         }
-        return false;
     }
 
-    // Match any characters which aren't + | or ]
-    private boolean parseParamLiteral(String input, ASTNode ast) {
-        String[] groups = Regex.matches("^([^+|\\]]*)(.*)$", input );
-        if( groups != null && groups.length > 2 ) {
-            ast.name = groups[1];
-            ast.__trailing = groups[2];
+    static boolean isFragmentChar(char ch) {
+        switch( ch ) {
+        case '.': case '/': case '%': case '~': case '-':
             return true;
+        default:
+            return isWordChar( ch );
         }
-        return false;
     }
 
-    /**
-     * Return the first character in a string.
-     * Handles null and empty strings, returning 0x00 instead.
-     */
-    static final char firstChar(final String s) {
-        return s != null && s.length() > 0 ? s.charAt( 0 ) : 0x00;
+    static boolean isFormatChar(char ch) {
+        switch( ch ) {
+        case '.': case '~': case '-':
+            return true;
+        default:
+            return isWordChar( ch );
+        }
+    }
+
+    static boolean isParamNameChar(char ch) {
+        return ch == '-' || isWordChar( ch );
+    }
+
+    static boolean isLiteralChar(char ch) {
+        return ch != '+' && ch != '|' && ch != ']';
     }
 
 }
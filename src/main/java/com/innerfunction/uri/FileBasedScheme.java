@@ -21,9 +21,11 @@ import com.innerfunction.util.Paths;
 import java.io.File;
 import java.util.Map;
 
-public class FileBasedScheme implements RelativeURIScheme {
+public class FileBasedScheme implements RelativeURIScheme, CacheableURIScheme {
 
     private static final String LogTag = FileBasedScheme.class.getSimpleName();
+    /** The default time-to-live of cached values, in milliseconds. */
+    static final long DefaultCacheTTL = 30000;
     /** The app context. */
     protected Context context;
     /**
@@ -31,6 +33,12 @@ public class FileBasedScheme implements RelativeURIScheme {
      * All file's referenced using the scheme handled by this class will be located under this root.
      */
     protected File rootDir;
+    /**
+     * The scheme's cache policy.
+     * Files can be created or deleted at any time, so by default values are cached for a short
+     * time only.
+     */
+    private URICachePolicy cachePolicy = URICachePolicy.withTTL( DefaultCacheTTL );
 
     /** Create a scheme handler for the file system root. */
     protected FileBasedScheme(Context context) {
@@ -66,6 +74,15 @@ public class FileBasedScheme implements RelativeURIScheme {
         return rootDir != null ? rootDir.getAbsolutePath() : null;
     }
 
+    public void setCachePolicy(URICachePolicy cachePolicy) {
+        this.cachePolicy = cachePolicy;
+    }
+
+    @Override
+    public URICachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
     /**
      * Test if a URI is a relative URI, and if so then resolve to an absolute URI.
      * Both URI arguments should belong to the same URI scheme, which should be the scheme
@@ -15,23 +15,42 @@ package com.innerfunction.uri;
 
 import android.content.Context;
 import android.graphics.drawable.Drawable;
+import android.util.Log;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 
 import com.innerfunction.util.Files;
+import com.innerfunction.util.LazyJSON;
+import com.innerfunction.util.TypeConversions;
+
+import org.json.simple.parser.ParseException;
 
 /**
  * An object for representing file resources.
+ * The resource's string, data, JSON and image representations are memoized in a cache shared by
+ * all file resources (@see RepresentationCache), and are validated against the file's length and
+ * modification time before being reused. Note that memoized representations are shared, and so
+ * must not be modified by their users.
  */
 @SuppressWarnings("unused")
 public class FileResource extends Resource {
 
     private static final String LogTag = FileResource.class.getSimpleName();
 
+    static final String StringRepresentation = "string";
+    static final String DataRepresentation = "data";
+    static final String JSONRepresentation = "json";
+    static final String ImageRepresentation = "image";
+
+    /** The ID of the file path representation, i.e. the absolute path of the file. */
+    static final int FilePathRepresentation = TypeConversions.registerRepresentation("filepath");
+
     /** The file being represented. */
     private File file;
 
@@ -63,7 +82,7 @@ public class FileResource extends Resource {
 
     /** Return the string contents of the file resource. */
     public String asString() {
-        return Files.readString( this.file );
+        return (String)getMemoizedRepresentation( StringRepresentation );
     }
 
     /** Return the file URL. */
@@ -71,8 +90,84 @@ public class FileResource extends Resource {
         return this.file.toURI();
     }
 
-    /** Return the byte contents of the file resource. */
+    /**
+     * Return the byte contents of the file resource.
+     * Each call returns a new copy of the contents; use asByteBuffer() for read-only access
+     * without copying.
+     */
     public byte[] asData() {
+        byte[] data = getSharedData();
+        return data != null ? data.clone() : null;
+    }
+
+    /**
+     * Get the memoized byte contents of the resource.
+     * The returned array is shared with all other users of the resource's content, and so must
+     * not be modified or passed outside of the resource.
+     */
+    protected byte[] getSharedData() {
+        return (byte[])getMemoizedRepresentation( DataRepresentation );
+    }
+
+    /**
+     * Return the byte contents of the file resource as a read-only buffer.
+     * Large files are memory mapped, so their contents aren't copied onto the heap.
+     * @see Files#mapData
+     */
+    public ByteBuffer asByteBuffer() {
+        try {
+            return Files.mapData( this.file );
+        }
+        catch(IOException e) {
+            Log.e( LogTag, String.format("Mapping %s", this.file ), e );
+        }
+        return null;
+    }
+
+    /**
+     * Return the file's contents as parsed JSON data.
+     * The data is shared with all other users of the resource's content, so objects and arrays
+     * within the data are read-only (@see LazyJSON#toReadOnly).
+     */
+    public Object asJSONData() {
+        return getMemoizedRepresentation( JSONRepresentation );
+    }
+
+    /**
+     * Return the contents of the file resource as an image.
+     * Each call returns a new drawable, but drawables share the memoized image state.
+     */
+    public Drawable asImage() {
+        String contentKey = getContentKey();
+        long length = 0, lastModified = 0;
+        if( contentKey != null ) {
+            length = getContentLength();
+            lastModified = getContentLastModified();
+            Object state = RepresentationCache.get( contentKey, ImageRepresentation, length, lastModified );
+            if( state instanceof Drawable.ConstantState ) {
+                return ((Drawable.ConstantState)state).newDrawable( context.getResources() );
+            }
+        }
+        // Memoize the image's constant state, from which new drawables can be created; an image
+        // without a constant state is not memoized. Note that the decoded image is returned, so
+        // that it is only decoded once.
+        Drawable image = readImage();
+        if( image != null && contentKey != null ) {
+            Drawable.ConstantState state = image.getConstantState();
+            if( state != null ) {
+                RepresentationCache.put( contentKey, ImageRepresentation, length, lastModified, state );
+            }
+        }
+        return image;
+    }
+
+    /** Read the string contents of the resource. */
+    protected String readString() {
+        return Files.readString( this.file );
+    }
+
+    /** Read the byte contents of the resource. */
+    protected byte[] readData() {
         try {
             return Files.readData( this.file );
         }
@@ -81,21 +176,118 @@ public class FileResource extends Resource {
         }
     }
 
-    /** Return the file's contents as parsed JSON data. */
-    public Object asJSONData() {
-        return getTypeConversions().asJSONData( asString() );
+    /**
+     * Read the resource's contents as parsed JSON data.
+     * The JSON is parsed lazily, directly from the resource's byte buffer, so that objects and
+     * arrays within the data are only read when first accessed (@see LazyJSON). Object keys and
+     * short string values are interned using the URI handler's string table as they are read.
+     * As the parsed data continues to read from the buffer, a memory mapped buffer is first copied
+     * onto the heap unless the resource's content is immutable; otherwise, rewriting the file would
+     * change or invalidate any data not yet read.
+     * The lazy parser is strict, so contents which it rejects are parsed again using json-simple,
+     * which tolerates e.g. trailing or missing commas. Contents which don't look like JSON, or
+     * which fail to parse, are returned as a string, as per TypeConversions.asJSONData().
+     */
+    protected Object readJSONData() {
+        ByteBuffer buffer = asByteBuffer();
+        if( buffer == null ) {
+            return null;
+        }
+        if( LazyJSON.isJSON( buffer ) ) {
+            if( buffer.isDirect() && !isImmutable() ) {
+                ByteBuffer copy = ByteBuffer.allocate( buffer.remaining() );
+                copy.put( buffer.duplicate() );
+                copy.flip();
+                buffer = copy.asReadOnlyBuffer();
+            }
+            try {
+                return LazyJSON.parse( buffer, getStringInterner() );
+            }
+            catch(ParseException e) {
+                Log.w( LogTag, String.format("Non-standard JSON in %s: %s", getAssetName(), e ) );
+            }
+            Object data = Files.readJSON( buffer, getAssetName() );
+            if( data != null ) {
+                return data;
+            }
+        }
+        return asString();
     }
 
-    /** Return the contents of the file resource as an image. */
-    public Drawable asImage() {
+    /** Read the contents of the resource as an image. */
+    protected Drawable readImage() {
         return Drawable.createFromPath( this.file.getAbsolutePath() );
     }
 
+    /**
+     * Get the key identifying the resource's content in the representation cache.
+     * @return A content key, or null if the resource's representations can't be memoized.
+     */
+    protected String getContentKey() {
+        return file != null ? file.getAbsolutePath() : null;
+    }
+
+    /**
+     * Test whether the resource's content is immutable.
+     * Memoized representations of immutable content are never revalidated.
+     */
+    protected boolean isImmutable() {
+        return false;
+    }
+
+    /** Get the content length used to validate memoized representations. */
+    private long getContentLength() {
+        return isImmutable() ? RepresentationCache.Immutable : file.length();
+    }
+
+    /** Get the content modification time used to validate memoized representations. */
+    private long getContentLastModified() {
+        return isImmutable() ? RepresentationCache.Immutable : file.lastModified();
+    }
+
+    /**
+     * Get a memoized representation of the resource.
+     * Reads the representation from the resource's content if it isn't memoized, or if the
+     * resource's content has changed since the representation was memoized.
+     */
+    private Object getMemoizedRepresentation(String representation) {
+        String contentKey = getContentKey();
+        if( contentKey == null ) {
+            return readRepresentation( representation );
+        }
+        // Note that the validators are read before the file contents, so that a concurrent
+        // modification to the file will invalidate the memoized value.
+        long length = getContentLength();
+        long lastModified = getContentLastModified();
+        Object value = RepresentationCache.get( contentKey, representation, length, lastModified );
+        if( value == null ) {
+            value = readRepresentation( representation );
+            RepresentationCache.put( contentKey, representation, length, lastModified, value );
+        }
+        return value;
+    }
+
+    /** Read a representation of the resource's content. */
+    private Object readRepresentation(String representation) {
+        switch( representation ) {
+        case StringRepresentation:
+            return readString();
+        case DataRepresentation:
+            return readData();
+        case JSONRepresentation:
+            return LazyJSON.toReadOnly( readJSONData() );
+        }
+        return null;
+    }
+
     @Override
-    public Object asRepresentation(String representation) {
-        if( "filepath".equals( representation ) ) {
+    public Object asRepresentation(int representation) {
+        if( representation == FilePathRepresentation ) {
             return this.file.getAbsolutePath();
         }
+        if( representation == TypeConversions.DataRepresentation ) {
+            return asData();
+        }
         return super.asRepresentation( representation );
     }
 
@@ -0,0 +1,49 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.uri;
+
+import android.content.Context;
+
+import java.io.File;
+
+/**
+ * An object for representing remote resources referenced by http: and https: URIs.
+ * The resource's contents are read from a local copy of the remote resource, held in the HTTP
+ * scheme's on-disk cache (@see HTTPScheme).
+ */
+@SuppressWarnings("unused")
+public class HTTPResource extends FileResource {
+
+    /** The URL the resource was downloaded from. */
+    private String remoteURL;
+    /** The resource's content type, as reported by the server. */
+    private String contentType;
+
+    public HTTPResource(Context context, File file, CompoundURI uri, String remoteURL, String contentType) {
+        super( context, file, uri );
+        this.remoteURL = remoteURL;
+        this.contentType = contentType;
+    }
+
+    /** Get the URL the resource was downloaded from. */
+    public String getRemoteURL() {
+        return remoteURL;
+    }
+
+    /** Get the resource's content type. May be null if the server didn't report a type. */
+    public String getContentType() {
+        return contentType;
+    }
+
+}
@@ -0,0 +1,464 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.uri;
+
+import android.content.Context;
+import android.os.Looper;
+import android.util.Log;
+
+import com.innerfunction.http.Client;
+import com.innerfunction.http.FileRequest;
+import com.innerfunction.http.Response;
+import com.innerfunction.q.Q;
+import com.innerfunction.util.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A URI scheme handler for http: and https: URIs.
+ * Dereferences URIs to resources downloaded from the URI's URL; for example, the URI
+ * <code>https://example.com/content/table.json</code> is dereferenced to a resource representing
+ * the contents of the same named URL. Any URI parameters are appended to the URL as query string
+ * parameters.
+ *
+ * Downloaded resources are persisted to a directory under the app's content cache location. Each
+ * cached resource is used without contacting the server until it expires, as determined by
+ * the max-age directive of the response's Cache-Control header, or by the scheme's max-age
+ * setting if the server doesn't specify one. Once expired, the resource is revalidated using a
+ * conditional request on its ETag and Last-Modified validators, and only downloaded again if it
+ * has changed on the server. If the server can't be reached then any cached copy of the resource
+ * is returned instead.
+ *
+ * Synchronous dereferences made on the main thread never contact the server: they return the
+ * cached copy of the resource, if any, and download or revalidate the resource in the background.
+ */
+public class HTTPScheme implements AsyncURIScheme, CacheableURIScheme {
+
+    private static final String LogTag = HTTPScheme.class.getSimpleName();
+    /** The default time, in milliseconds, for which a downloaded resource is used without revalidation. */
+    static final long DefaultMaxAge = 60000;
+    /** The name of the scheme's cache directory, under the app's content cache location. */
+    static final String CacheDirName = "http";
+
+    /** The app context. */
+    private Context context;
+    /** The HTTP client used to download resources. Created when first needed. */
+    private Client client;
+    /** The directory used to store downloaded resources. */
+    private File cacheDir;
+    /** The time, in milliseconds, for which resources are used without revalidation. */
+    private long maxAge = DefaultMaxAge;
+    /** The scheme's cache policy. */
+    private URICachePolicy cachePolicy = URICachePolicy.withTTL( FileBasedScheme.DefaultCacheTTL );
+
+    /**
+     * Information about a resource in the scheme's cache.
+     * Stored as JSON in a file alongside the resource's data file.
+     */
+    static final class CacheEntry {
+        /** The resource URL. */
+        final String url;
+        /** The resource's ETag validator; or null. */
+        final String etag;
+        /** The resource's Last-Modified validator; or null. */
+        final String lastModified;
+        /** The resource's content type; or null. */
+        final String contentType;
+        /** The time after which the resource must be revalidated. */
+        final long expires;
+
+        CacheEntry(String url, String etag, String lastModified, String contentType, long expires) {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.expires = expires;
+        }
+
+        /** Test whether the resource can be used without revalidation. */
+        boolean isFresh() {
+            return System.currentTimeMillis() < expires;
+        }
+
+        /** Get the request headers needed to revalidate the resource. */
+        Map<String,Object> getValidationHeaders() {
+            Map<String,Object> headers = new HashMap<>();
+            if( etag != null ) {
+                headers.put("If-None-Match", etag );
+            }
+            if( lastModified != null ) {
+                headers.put("If-Modified-Since", lastModified );
+            }
+            return headers;
+        }
+
+        Map<String,Object> toJSON() {
+            Map<String,Object> json = new HashMap<>();
+            json.put("url", url );
+            json.put("etag", etag );
+            json.put("lastModified", lastModified );
+            json.put("contentType", contentType );
+            json.put("expires", expires );
+            return json;
+        }
+
+        static CacheEntry fromJSON(Object json) {
+            if( json instanceof Map ) {
+                Map<?,?> map = (Map<?,?>)json;
+                Object expires = map.get("expires");
+                return new CacheEntry(
+                    (String)map.get("url"),
+                    (String)map.get("etag"),
+                    (String)map.get("lastModified"),
+                    (String)map.get("contentType"),
+                    expires instanceof Number ? ((Number)expires).longValue() : 0 );
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Create a new scheme handler.
+     * Resources are cached in a directory under the app's content cache location.
+     * @param context   The app context.
+     */
+    public HTTPScheme(Context context) {
+        this( context, new File( Files.getCacheDir( context ), CacheDirName ) );
+    }
+
+    /**
+     * Create a new scheme handler.
+     * @param context   The app context.
+     * @param cacheDir  The directory used to store downloaded resources.
+     */
+    public HTTPScheme(Context context, File cacheDir) {
+        this.context = context;
+        this.cacheDir = cacheDir;
+    }
+
+    /** Set the HTTP client used to download resources. */
+    public synchronized void setClient(Client client) {
+        this.client = client;
+    }
+
+    /** Get the HTTP client used to download resources. */
+    public synchronized Client getClient() {
+        if( client == null ) {
+            client = new Client( context );
+        }
+        return client;
+    }
+
+    /**
+     * Set the time, in milliseconds, for which downloaded resources are used without revalidation.
+     * Only applies to resources whose response doesn't specify a Cache-Control max-age.
+     */
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    public void setCachePolicy(URICachePolicy cachePolicy) {
+        this.cachePolicy = cachePolicy;
+    }
+
+    @Override
+    public URICachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
+    /**
+     * Dereference a URI to a resource.
+     * Blocks until the resource is available; use dereferenceAsync where possible. When called
+     * on the main thread, only returns a cached copy of the resource (@see dereferenceCached).
+     * @return A HTTP resource, or null if the resource can't be downloaded.
+     */
+    @Override
+    public Object dereference(CompoundURI uri, Map<String,Object> params) {
+        String url = makeURL( uri, params );
+        if( Looper.myLooper() == Looper.getMainLooper() ) {
+            return dereferenceCached( uri, url );
+        }
+        try {
+            // The cached copy is read on the calling thread, which is already prepared to block.
+            Q.Promise<Object> promise = new Q.Promise<>();
+            fetch( uri, url, promise );
+            return promise.sync();
+        }
+        catch(Exception e) {
+            Log.e( LogTag, String.format("Failed to dereference %s", uri ), e );
+        }
+        return null;
+    }
+
+    /**
+     * Dereference a URI to its cached resource, without blocking on the network.
+     * Used for synchronous dereferences on the main thread. Returns the cached copy of the
+     * resource, even if it has expired, and downloads or revalidates the resource in the
+     * background if it isn't cached or has expired, so that a later dereference can use it.
+     * @return A HTTP resource, or null if the resource isn't cached.
+     */
+    private Object dereferenceCached(final CompoundURI uri, final String url) {
+        String key = makeCacheKey( url );
+        CacheEntry entry = readCacheEntry( key, url );
+        if( entry == null || !entry.isFresh() ) {
+            if( entry == null ) {
+                Log.w( LogTag, String.format("%s isn't cached; dereference it asynchronously when on the main thread", url ) );
+            }
+            try {
+                StandardURIHandler.AsyncExecutor.execute( new Runnable() {
+                    @Override
+                    public void run() {
+                        fetch( uri, url, new Q.Promise<Object>() );
+                    }
+                });
+            }
+            catch(RejectedExecutionException e) {
+                Log.w( LogTag, String.format("Unable to fetch %s", url ), e );
+            }
+        }
+        return entry != null ? makeResource( uri, key, entry ) : null;
+    }
+
+    /**
+     * Dereference a URI to a resource asynchronously.
+     * Never blocks the calling thread; the cached copy of the resource is read on a background
+     * thread.
+     */
+    @Override
+    public Q.Promise<Object> dereferenceAsync(final CompoundURI uri, Map<String,Object> params) {
+        final Q.Promise<Object> promise = new Q.Promise<>();
+        final String url = makeURL( uri, params );
+        try {
+            StandardURIHandler.AsyncExecutor.execute( new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        fetch( uri, url, promise );
+                    }
+                    catch(Exception e) {
+                        promise.reject( e );
+                    }
+                }
+            });
+        }
+        catch(RejectedExecutionException e) {
+            promise.reject( e );
+        }
+        return promise;
+    }
+
+    /**
+     * Fetch the resource at a URL.
+     * Resolves the promise with the cached copy of the resource if it is still fresh; otherwise
+     * downloads or revalidates the resource. Reads from the cache, so blocks while doing so.
+     */
+    private void fetch(final CompoundURI uri, final String url, final Q.Promise<Object> promise) {
+        final String key = makeCacheKey( url );
+        final CacheEntry entry = readCacheEntry( key, url );
+        if( entry != null && entry.isFresh() ) {
+            // Cached copy is still valid, no need to contact the server.
+            promise.resolve( makeResource( uri, key, entry ) );
+            return;
+        }
+        final File downloadFile;
+        final FileRequest request;
+        try {
+            if( !Files.ensureDirectoryExists( cacheDir, true ) ) {
+                throw new IOException( String.format("Unable to create cache directory %s", cacheDir ) );
+            }
+            downloadFile = File.createTempFile( key, ".tmp", cacheDir );
+            request = new FileRequest( url, "GET", downloadFile );
+        }
+        catch(IOException e) {
+            promise.reject( e );
+            return;
+        }
+        if( entry != null ) {
+            request.setHeaders( entry.getValidationHeaders() );
+        }
+        getClient().send( request )
+            .then( new Q.Promise.Callback<Response,Void>() {
+                @Override
+                public Void result(Response response) {
+                    int statusCode = response.getStatusCode();
+                    if( statusCode == 304 && entry != null ) {
+                        // Not modified; keep the cached copy, with an updated expiry time.
+                        downloadFile.delete();
+                        CacheEntry revalidated = new CacheEntry( url, entry.etag, entry.lastModified, entry.contentType, getExpiryTime( response ) );
+                        writeCacheEntry( key, revalidated );
+                        promise.resolve( makeResource( uri, key, revalidated ) );
+                    }
+                    else if( statusCode >= 200 && statusCode < 300 ) {
+                        CacheEntry downloaded = new CacheEntry(
+                            url,
+                            response.getHeader("ETag"),
+                            response.getHeader("Last-Modified"),
+                            response.getContentType(),
+                            getExpiryTime( response ) );
+                        if( storeDownload( key, downloadFile, downloaded ) ) {
+                            promise.resolve( makeResource( uri, key, downloaded ) );
+                        }
+                        else {
+                            promise.reject( String.format("Failed to cache download of %s", url ) );
+                        }
+                    }
+                    else {
+                        downloadFile.delete();
+                        downloadFailed( promise, uri, key, entry, String.format("HTTP %d", statusCode ) );
+                    }
+                    return null;
+                }
+            })
+            .error( new Q.Promise.ErrorCallback() {
+                @Override
+                public void error(Exception e) {
+                    downloadFile.delete();
+                    downloadFailed( promise, uri, key, entry, e.getMessage() );
+                }
+            });
+    }
+
+    /**
+     * Handle a failed download.
+     * Resolves the promise with the cached copy of the resource if available; otherwise rejects
+     * the promise.
+     */
+    private void downloadFailed(Q.Promise<Object> promise, CompoundURI uri, String key, CacheEntry entry, String reason) {
+        if( entry != null ) {
+            Log.w( LogTag, String.format("Using cached copy of %s: %s", entry.url, reason ) );
+            promise.resolve( makeResource( uri, key, entry ) );
+        }
+        else {
+            promise.reject( String.format("Failed to download %s: %s", uri, reason ) );
+        }
+    }
+
+    /** Make the resource URL for a URI. */
+    String makeURL(CompoundURI uri, Map<String,Object> params) {
+        String url = uri.getScheme()+":"+uri.getName();
+        if( params != null && params.size() > 0 ) {
+            url = String.format("%s?%s", url, Client.makeQueryString( params ) );
+        }
+        return url;
+    }
+
+    /**
+     * Calculate when a downloaded resource expires.
+     * Uses the max-age directive of the response's Cache-Control header, if any; otherwise
+     * the scheme's max-age.
+     */
+    private long getExpiryTime(Response response) {
+        long age = maxAge;
+        String cacheControl = response.getHeader("Cache-Control");
+        if( cacheControl != null ) {
+            for( String directive : cacheControl.split(",") ) {
+                directive = directive.trim().toLowerCase();
+                if( directive.equals("no-cache") || directive.equals("no-store") ) {
+                    age = 0;
+                    break;
+                }
+                if( directive.startsWith("max-age=") ) {
+                    try {
+                        age = Long.parseLong( directive.substring( 8 ) ) * 1000;
+                    }
+                    catch(NumberFormatException e) {
+                        Log.w( LogTag, String.format("Bad Cache-Control header: %s", cacheControl ) );
+                    }
+                }
+            }
+        }
+        return System.currentTimeMillis() + age;
+    }
+
+    /** Make the cache key for a URL. The key is used as the name of the URL's cache files. */
+    static String makeCacheKey(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest( url.getBytes("UTF-8") );
+            StringBuilder sb = new StringBuilder( hash.length * 2 );
+            for( byte b : hash ) {
+                sb.append( Character.forDigit( (b >> 4) & 0x0F, 16 ) );
+                sb.append( Character.forDigit( b & 0x0F, 16 ) );
+            }
+            return sb.toString();
+        }
+        catch(NoSuchAlgorithmException | IOException e) {
+            // Won't/can't happen.
+            return Integer.toHexString( url.hashCode() );
+        }
+    }
+
+    private File getDataFile(String key) {
+        return new File( cacheDir, key+".data" );
+    }
+
+    private File getEntryFile(String key) {
+        return new File( cacheDir, key+".meta" );
+    }
+
+    /**
+     * Read the cache entry for a URL.
+     * @return The cache entry, or null if the URL isn't cached.
+     */
+    private CacheEntry readCacheEntry(String key, String url) {
+        File entryFile = getEntryFile( key );
+        if( entryFile.exists() && getDataFile( key ).exists() ) {
+            CacheEntry entry = CacheEntry.fromJSON( Files.readJSON( entryFile ) );
+            if( entry != null && url.equals( entry.url ) ) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void writeCacheEntry(String key, CacheEntry entry) {
+        Files.writeJSON( getEntryFile( key ), entry.toJSON() );
+    }
+
+    /** Move a downloaded file into the cache. */
+    private synchronized boolean storeDownload(String key, File downloadFile, CacheEntry entry) {
+        if( Files.mv( downloadFile, getDataFile( key ) ) ) {
+            writeCacheEntry( key, entry );
+            return true;
+        }
+        downloadFile.delete();
+        return false;
+    }
+
+    private Resource makeResource(CompoundURI uri, String key, CacheEntry entry) {
+        return new HTTPResource( context, getDataFile( key ), uri, entry.url, entry.contentType );
+    }
+
+    /** Delete all cached resources. */
+    public synchronized void clearCache() {
+        if( cacheDir.exists() ) {
+            Files.rm( cacheDir );
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.uri;
+
+import android.util.LruCache;
+
+import java.lang.ref.SoftReference;
+
+/**
+ * A cache of the representations of file based resources.
+ * The cache is shared by all resources, so that resources referencing the same content (e.g. the
+ * resources produced by separate dereferences of the same URI) share their representations.
+ * Representations are keyed by the resource's content key and the representation name, and are
+ * validated against the length and modification time of the underlying file; content which
+ * can't change (e.g. app assets) is never revalidated. Cached values are held through soft
+ * references, so can be reclaimed under memory pressure, and entries are evicted on a
+ * least-recently-used basis once the cache reaches its maximum size.
+ *
+ * Cached representations are shared by all users of the cache, and so must not be modified.
+ */
+final class RepresentationCache {
+
+    /** The maximum number of representations held by the cache. */
+    static final int CacheSize = 100;
+    /** A validator value indicating that a resource's content is immutable. */
+    static final long Immutable = -1;
+
+    static final LruCache<Key,Entry> Entries = new LruCache<>( CacheSize );
+
+    /** A cache key. */
+    static final class Key {
+        /** A key identifying the resource's content, e.g. a file path. */
+        final String contentKey;
+        /** The representation name. */
+        final String representation;
+
+        Key(String contentKey, String representation) {
+            this.contentKey = contentKey;
+            this.representation = representation;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * contentKey.hashCode() + representation.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if( !(obj instanceof Key) ) {
+                return false;
+            }
+            Key key = (Key)obj;
+            return contentKey.equals( key.contentKey ) && representation.equals( key.representation );
+        }
+    }
+
+    /** A cache entry. */
+    static final class Entry {
+        /** The cached representation. */
+        final SoftReference<Object> value;
+        /** The length of the resource's content when the representation was produced. */
+        final long length;
+        /** The modification time of the resource's content when the representation was produced. */
+        final long lastModified;
+
+        Entry(Object value, long length, long lastModified) {
+            this.value = new SoftReference<>( value );
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private RepresentationCache() {}
+
+    /**
+     * Get a cached representation.
+     * @param contentKey        The resource's content key.
+     * @param representation    The representation name.
+     * @param length            The current length of the resource's content; or Immutable.
+     * @param lastModified      The current modification time of the resource's content; or
+     *                          Immutable.
+     * @return The cached representation, or null if the representation isn't cached or is stale.
+     */
+    static Object get(String contentKey, String representation, long length, long lastModified) {
+        Key key = new Key( contentKey, representation );
+        Entry entry = Entries.get( key );
+        if( entry != null ) {
+            if( entry.length == length && entry.lastModified == lastModified ) {
+                Object value = entry.value.get();
+                if( value != null ) {
+                    return value;
+                }
+            }
+            // Stale or reclaimed entry.
+            Entries.remove( key );
+        }
+        return null;
+    }
+
+    /**
+     * Cache a representation.
+     * Null values aren't cached.
+     */
+    static void put(String contentKey, String representation, long length, long lastModified, Object value) {
+        if( value != null ) {
+            Entries.put( new Key( contentKey, representation ), new Entry( value, length, lastModified ) );
+        }
+    }
+
+    /** Discard all cached representations. */
+    static void evictAll() {
+        Entries.evictAll();
+    }
+}
@@ -18,6 +18,7 @@ import android.graphics.drawable.Drawable;
 
 import java.net.URI;
 
+import com.innerfunction.util.StringInterner;
 import com.innerfunction.util.TypeConversions;
 
 /**
@@ -86,6 +87,17 @@ public class Resource {
         return TypeConversions.instanceForContext( context );
     }
 
+    /**
+     * Get the table used to intern strings when parsing the resource's data.
+     * @return The URI handler's string table, or null if the handler doesn't provide one.
+     */
+    protected StringInterner getStringInterner() {
+        if( uriHandler instanceof StandardURIHandler ) {
+            return ((StandardURIHandler)uriHandler).getStringInterner();
+        }
+        return null;
+    }
+
     public String asString() {
         return getTypeConversions().asString( data );
     }
@@ -110,27 +122,42 @@ public class Resource {
         return getTypeConversions().asImage( data );
     }
 
+    /**
+     * Return the resource in the named representation.
+     * @see TypeConversions#asRepresentation(Object, String)
+     */
     public Object asRepresentation(String name) {
-        name = name.toLowerCase();
-        if( "jsondata".equals( name ) || "json".equals( name ) ) {
+        return asRepresentation( TypeConversions.getRepresentation( name ) );
+    }
+
+    /**
+     * Return the resource in a representation.
+     * Standard representations which have a corresponding method on this class (e.g. asString())
+     * are returned using that method. Other representations are produced using any converter
+     * registered for the resource's class, or otherwise by converting the resource's data.
+     * @param representation    A representation ID, @see TypeConversions.
+     */
+    public Object asRepresentation(int representation) {
+        switch( representation ) {
+        case TypeConversions.JSONDataRepresentation:
             return asJSONData();
-        }
-        else if( "image".equals( name ) ) {
+        case TypeConversions.ImageRepresentation:
             return asImage();
-        }
-        else if( "url".equals( name ) ) {
+        case TypeConversions.URLRepresentation:
             return asURL();
-        }
-        else if( "string".equals( name ) ) {
+        case TypeConversions.StringRepresentation:
             return asString();
-        }
-        else if( "number".equals( name ) ) {
+        case TypeConversions.NumberRepresentation:
             return asNumber();
-        }
-        else if( "boolean".equals( name ) ) {
+        case TypeConversions.BooleanRepresentation:
             return asBoolean();
         }
-        return getTypeConversions().asRepresentation( data, name );
+        TypeConversions conversions = getTypeConversions();
+        if( representation >= TypeConversions.StandardRepresentationCount
+            && conversions.getConverter( getClass(), representation ) != null ) {
+            return conversions.asRepresentation( this, representation );
+        }
+        return conversions.asRepresentation( data, representation );
     }
 
     /**
@@ -15,15 +15,23 @@ package com.innerfunction.uri;
 
 import android.content.Context;
 import android.util.Log;
+import android.util.LruCache;
 
+import com.innerfunction.q.Q;
 import com.innerfunction.util.Assets;
 import com.innerfunction.util.Files;
-import com.innerfunction.util.Maps;
+import com.innerfunction.util.PersistentMap;
+import com.innerfunction.util.StringInterner;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.net.URISyntaxException;
 
 /**
@@ -38,6 +46,22 @@ public class StandardURIHandler implements URIHandler {
 
     private static final String LogTag = "URIHandler";
 
+    /** The maximum number of handler copies cached for reuse. */
+    static final int HandlerCopiesCacheSize = 100;
+
+    /** The executor used to call synchronous scheme handlers when dereferencing asynchronously. */
+    static final ExecutorService AsyncExecutor = Executors.newFixedThreadPool(
+        Math.max( 2, Runtime.getRuntime().availableProcessors() ),
+        new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger( 0 );
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread( runnable, String.format("%s-async-%d", LogTag, threadCount.incrementAndGet() ) );
+                thread.setDaemon( true );
+                return thread;
+            }
+        });
+
     /** A map of handler instances by app context. */
     private static final Map<Context,StandardURIHandler> Instances = new HashMap<>();
 
@@ -45,9 +69,23 @@ public class StandardURIHandler implements URIHandler {
     private Map<String,URIScheme> schemeHandlers = new HashMap<>();
     /**
      * A map of URI scheme contexts.
-     * Contains reference absolute URIs for different schemes.
+     * Contains reference absolute URIs for different schemes. The map is immutable; copies of the
+     * handler with modified scheme contexts have their own map.
+     */
+    private PersistentMap<String,CompoundURI> schemeContexts = PersistentMap.empty();
+    /**
+     * Copies of the handler with modified scheme contexts, keyed by scheme contexts.
+     * Shared by the handler and all its copies, so that the handlers of resources with the same
+     * scheme contexts are shared.
+     */
+    private LruCache<Map<String,CompoundURI>,StandardURIHandler> handlerCopies = new LruCache<>( HandlerCopiesCacheSize );
+    /** A cache of dereferenced URI values; shared with all copies of the handler. */
+    private URIDereferenceCache dereferenceCache = new URIDereferenceCache();
+    /**
+     * A table for interning the strings of JSON data read from resources dereferenced by the
+     * handler; shared with all copies of the handler.
      */
-    private Map<String,CompoundURI> schemeContexts = new HashMap<>();
+    private StringInterner stringInterner = new StringInterner();
     /** The asset manager used by the resolver. */
     private Assets assets;
     /** A map of named URI formatters. */
@@ -60,10 +98,13 @@ public class StandardURIHandler implements URIHandler {
     }
 
     /** Constructor used to build copies of handlers with modified scheme contexts. */
-    private StandardURIHandler(StandardURIHandler handler, CompoundURI uri) {
+    private StandardURIHandler(StandardURIHandler handler, PersistentMap<String,CompoundURI> schemeContexts) {
         this.schemeHandlers = handler.schemeHandlers;
         this.assets = handler.assets;
-        this.schemeContexts = Maps.extend( handler.schemeContexts, uri.getScheme(), uri );
+        this.schemeContexts = schemeContexts;
+        this.handlerCopies = handler.handlerCopies;
+        this.dereferenceCache = handler.dereferenceCache;
+        this.stringInterner = handler.stringInterner;
         this.formats = handler.formats;
         this.aliases = handler.aliases;
     }
@@ -79,6 +120,8 @@ public class StandardURIHandler implements URIHandler {
      *     <li><b>cache:</b> For accessing files in the app's cache location.</li>
      *     <li><b>local:</b> For accessing values in the app's local storage.</li>
      *     <li><b>repr:</b> For accessing non-default value representations.</li>
+     *     <li><b>http:</b> and <b>https:</b> For accessing remote resources. Downloaded resources
+     *     are cached under the app's cache location.</li>
      * </ul>
      */
     public StandardURIHandler(Context context, Assets assets) {
@@ -87,6 +130,9 @@ public class StandardURIHandler implements URIHandler {
         schemeHandlers.put("cache", new FileBasedScheme( context, Files.getCacheDir( context )));
         schemeHandlers.put("local", new LocalScheme(context));
         schemeHandlers.put("repr",  new ReprScheme(context));
+        HTTPScheme httpScheme = new HTTPScheme( context );
+        schemeHandlers.put("http",  httpScheme );
+        schemeHandlers.put("https", httpScheme );
     }
 
     public Assets getAssets() {
@@ -95,6 +141,9 @@ public class StandardURIHandler implements URIHandler {
 
     public void setFormats(Map<String,URIValueFormatter> formats) {
         this.formats = formats;
+        // Discard handler copies using the previous formats, and cached resources using them.
+        handlerCopies.evictAll();
+        dereferenceCache.invalidate();
     }
 
     public Map<String,URIValueFormatter> getFormats() {
@@ -103,12 +152,28 @@ public class StandardURIHandler implements URIHandler {
 
     public void setAliases(Map<String,String> aliases) {
         this.aliases = aliases;
+        // Discard handler copies using the previous aliases, and cached resources using them.
+        handlerCopies.evictAll();
+        dereferenceCache.invalidate();
     }
 
     public Map<String,String> getAliases() {
         return aliases;
     }
 
+    /**
+     * Get the handler's dereference cache.
+     * The cache is disabled by default; it can be enabled by setting the cache's maximum size.
+     */
+    public URIDereferenceCache getDereferenceCache() {
+        return dereferenceCache;
+    }
+
+    /** Get the table used to intern the strings of JSON data read from resources. */
+    public StringInterner getStringInterner() {
+        return stringInterner;
+    }
+
     /** Test if a URI scheme has a registered handler with this resolver. */
     @Override
     public boolean hasHandlerForURIScheme(String scheme) {
@@ -119,6 +184,7 @@ public class StandardURIHandler implements URIHandler {
     @Override
     public void addHandlerForScheme(String scheme, URIScheme handler) {
         schemeHandlers.put( scheme, handler );
+        dereferenceCache.invalidateScheme( scheme );
     }
 
     /** Return the set of registered URI scheme names. */
@@ -160,39 +226,230 @@ public class StandardURIHandler implements URIHandler {
         Object value = null;
         URIScheme handler = schemeHandlers.get( uri.getScheme() );
         if( handler != null ) {
-            // Resolve parameter values.
-            Map<String,CompoundURI> params = uri.getParameters();
-            Map<String,Object> paramValues = new HashMap<>( params.size() );
-            for( String name : params.keySet() ) {
-                Object paramValue = dereference( params.get( name ) );
-                if( paramValue != null ) {
-                    paramValues.put( name, paramValue );
-                }
-            }
             // Try to ensure that the current URI is an absolute URI.
-            CompoundURI referenceURI = schemeContexts.get( uri.getScheme() );
-            if( referenceURI != null && handler instanceof RelativeURIScheme ) {
-                uri = ((RelativeURIScheme)handler).resolveAgainst( uri, referenceURI );
+            uri = toAbsoluteURI( handler, uri );
+            // Check for a cached value.
+            URIDereferenceCache.Key cacheKey = makeCacheKey( uri );
+            if( cacheKey != null ) {
+                value = dereferenceCache.get( cacheKey );
+            }
+            if( value == null ) {
+                // Resolve parameter values.
+                Map<String,CompoundURI> params = uri.getParameters();
+                Map<String,Object> paramValues = new HashMap<>( params.size() );
+                for( String name : params.keySet() ) {
+                    Object paramValue = dereference( params.get( name ) );
+                    if( paramValue != null ) {
+                        paramValues.put( name, paramValue );
+                    }
+                }
+                // Ask the scheme handler to dereference the URI.
+                value = handler.dereference( uri, paramValues );
+                value = schemeValueDereferenced( uri, value, cacheKey );
             }
-            // Ask the scheme handler to dereference the URI.
-            value = handler.dereference( uri, paramValues );
         }
         else if( "a".equals( uri.getScheme() ) ) {
             // The a: scheme is a pseudo-scheme which is handled by the URI handler rather than a
-            // specific scheme handler. Lookup a URI alias and dereference that.
-            String aliasedURI = aliases.get( uri.getName() );
-            value = dereference( aliasedURI );
+            // specific scheme handler. Lookup a URI alias and dereference that. Note that any
+            // resource returned already has a URI handler for the aliased URI's scheme context,
+            // and may be shared through the dereference cache, so isn't modified.
+            String aliasedURI = aliases != null ? aliases.get( uri.getName() ) : null;
+            if( aliasedURI != null ) {
+                value = dereference( aliasedURI );
+            }
+            else {
+                Log.e( LogTag, String.format("URI alias not found: '%s'", uri.getName() ) );
+            }
         }
         else {
             Log.e( LogTag, String.format("Handler not found for scheme '%s'", uri.getScheme() ) );
         }
+        // Return the result.
+        return formatValue( uri, value );
+    }
+
+    /**
+     * Dereference a URI string asynchronously.
+     * @param uri An unparsed compound URI string. @see CompoundURI.
+     * @return A promise resolving to the value or resource referenced by the URI. The promise is
+     * rejected if the string isn't a valid URI.
+     */
+    @Override
+    public Q.Promise<Object> dereferenceAsync(String uri) {
+        try {
+            return dereferenceAsync( CompoundURI.parse( uri ) );
+        }
+        catch(URISyntaxException e) {
+            Log.e( LogTag, String.format("Parsing '%s'", uri ), e );
+            Q.Promise<Object> promise = new Q.Promise<>();
+            promise.reject( e );
+            return promise;
+        }
+    }
+
+    /**
+     * Dereference a compound URI asynchronously.
+     * The URI's parameters are dereferenced concurrently on background threads. Schemes which
+     * implement AsyncURIScheme are then asked to dereference the URI asynchronously; other
+     * schemes are called on a background thread. Note that the resulting promise may be resolved
+     * on a background thread.
+     * @return A promise resolving to the value or resource referenced by the URI.
+     */
+    @Override
+    public Q.Promise<Object> dereferenceAsync(CompoundURI uri) {
+        final URIScheme handler = schemeHandlers.get( uri.getScheme() );
+        if( handler != null ) {
+            // Try to ensure that the current URI is an absolute URI.
+            final CompoundURI absURI = toAbsoluteURI( handler, uri );
+            // Check for a cached value.
+            final URIDereferenceCache.Key cacheKey = makeCacheKey( absURI );
+            if( cacheKey != null ) {
+                Object value = dereferenceCache.get( cacheKey );
+                if( value != null ) {
+                    return formatValueAsync( absURI, Q.resolve( value ) );
+                }
+            }
+            Q.Promise<Object> result = dereferenceParametersAsync( absURI )
+                .then( new Q.Promise.AsyncCallback<Map<String,Object>,Object>() {
+                    @Override
+                    public Q.Promise<Object> result(Map<String,Object> paramValues) {
+                        return dereferenceWithSchemeAsync( handler, absURI, paramValues );
+                    }
+                })
+                .then( new Q.Promise.Callback<Object,Object>() {
+                    @Override
+                    public Object result(Object value) {
+                        return schemeValueDereferenced( absURI, value, cacheKey );
+                    }
+                });
+            return formatValueAsync( absURI, result );
+        }
+        if( "a".equals( uri.getScheme() ) ) {
+            // Lookup a URI alias and dereference that. (See dereference(CompoundURI)).
+            String aliasedURI = aliases != null ? aliases.get( uri.getName() ) : null;
+            if( aliasedURI == null ) {
+                Log.e( LogTag, String.format("URI alias not found: '%s'", uri.getName() ) );
+                return formatValueAsync( uri, Q.resolve( null ) );
+            }
+            return formatValueAsync( uri, dereferenceAsync( aliasedURI ) );
+        }
+        Log.e( LogTag, String.format("Handler not found for scheme '%s'", uri.getScheme() ) );
+        return formatValueAsync( uri, Q.resolve( null ) );
+    }
+
+    /**
+     * Dereference a URI's parameters asynchronously.
+     * @return A promise resolving to a map of the parameter values. Null values are omitted.
+     */
+    private Q.Promise<Map<String,Object>> dereferenceParametersAsync(CompoundURI uri) {
+        final Q.Promise<Map<String,Object>> promise = new Q.Promise<>();
+        final Map<String,CompoundURI> params = uri.getParameters();
+        final Map<String,Object> paramValues = new HashMap<>( params.size() );
+        if( params.isEmpty() ) {
+            promise.resolve( paramValues );
+            return promise;
+        }
+        final AtomicInteger pending = new AtomicInteger( params.size() );
+        for( final String name : params.keySet() ) {
+            dereferenceAsync( params.get( name ) )
+                .then( new Q.Promise.Callback<Object,Void>() {
+                    @Override
+                    public Void result(Object paramValue) {
+                        synchronized( paramValues ) {
+                            if( paramValue != null ) {
+                                paramValues.put( name, paramValue );
+                            }
+                        }
+                        if( pending.decrementAndGet() == 0 ) {
+                            promise.resolve( paramValues );
+                        }
+                        return null;
+                    }
+                })
+                .error( new Q.Promise.ErrorCallback() {
+                    @Override
+                    public void error(Exception e) {
+                        promise.reject( e );
+                    }
+                });
+        }
+        return promise;
+    }
+
+    /**
+     * Ask a scheme handler to dereference a URI asynchronously.
+     * Synchronous scheme handlers are called on a background thread.
+     */
+    private Q.Promise<Object> dereferenceWithSchemeAsync(final URIScheme handler, final CompoundURI uri, final Map<String,Object> paramValues) {
+        if( handler instanceof AsyncURIScheme ) {
+            return ((AsyncURIScheme)handler).dereferenceAsync( uri, paramValues );
+        }
+        final Q.Promise<Object> promise = new Q.Promise<>();
+        try {
+            AsyncExecutor.execute( new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        promise.resolve( handler.dereference( uri, paramValues ) );
+                    }
+                    catch(Exception e) {
+                        promise.reject( e );
+                    }
+                }
+            });
+        }
+        catch(RejectedExecutionException e) {
+            promise.reject( e );
+        }
+        return promise;
+    }
+
+    /** Resolve a possibly relative URI against the handler's scheme context for the URI scheme. */
+    private CompoundURI toAbsoluteURI(URIScheme handler, CompoundURI uri) {
+        CompoundURI referenceURI = schemeContexts.get( uri.getScheme() );
+        if( referenceURI != null && handler instanceof RelativeURIScheme ) {
+            uri = ((RelativeURIScheme)handler).resolveAgainst( uri, referenceURI );
+        }
+        return uri;
+    }
+
+    /**
+     * Make the dereference cache key for a URI.
+     * Returns null if the cache isn't enabled or the URI isn't cacheable.
+     */
+    private URIDereferenceCache.Key makeCacheKey(CompoundURI uri) {
+        if( dereferenceCache.isEnabled() ) {
+            List<String> schemeNames = new ArrayList<>();
+            URICachePolicy cachePolicy = getCachePolicy( uri, schemeNames );
+            if( cachePolicy.isCacheable() ) {
+                return new URIDereferenceCache.Key( uri, schemeContexts, schemeNames, cachePolicy );
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Process a value returned by a scheme handler.
+     * @param uri       The dereferenced URI.
+     * @param value     The value returned by the scheme handler.
+     * @param cacheKey  The URI's cache key; null if the value isn't to be cached.
+     */
+    private Object schemeValueDereferenced(CompoundURI uri, Object value, URIDereferenceCache.Key cacheKey) {
         // If the value result is a Resource instance then sets its uriHandler property to a copy
         // of this handler, but with a modified scheme context with the current scheme name mapped
-        // to the resource's URI.
+        // to the resource's URI. (Note that cached resources already have a URI handler with the
+        // same scheme contexts).
         if( value instanceof Resource ) {
             ((Resource)value).setURIHandler( modifySchemeContext( uri ) );
         }
-        // If the URI specifies a formatter then apply it to the URI result.
+        if( cacheKey != null ) {
+            dereferenceCache.put( cacheKey, value );
+        }
+        return value;
+    }
+
+    /** If a URI specifies a formatter then apply it to the URI's value. */
+    private Object formatValue(CompoundURI uri, Object value) {
         String format = uri.getFormat();
         if( format != null ) {
             URIValueFormatter formatter = formats.get( format );
@@ -204,10 +461,50 @@ public class StandardURIHandler implements URIHandler {
                 throw new RuntimeException( message );
             }
         }
-        // Return the result.
         return value;
     }
 
+    /** Apply a URI's formatter to a deferred value. */
+    private Q.Promise<Object> formatValueAsync(final CompoundURI uri, Q.Promise<Object> value) {
+        if( uri.getFormat() == null ) {
+            return value;
+        }
+        return value.then( new Q.Promise.Callback<Object,Object>() {
+            @Override
+            public Object result(Object value) {
+                return formatValue( uri, value );
+            }
+        });
+    }
+
+    /**
+     * Get the cache policy for a URI.
+     * A URI can only be cached if its scheme handler, and the scheme handlers of all of its
+     * parameter URIs, are cacheable; the URI can then be cached for the shortest time allowed by
+     * any of the schemes.
+     * @param uri           The URI.
+     * @param schemeNames   A list which the names of all schemes referenced by the URI are
+     *                      added to.
+     */
+    private URICachePolicy getCachePolicy(CompoundURI uri, List<String> schemeNames) {
+        String scheme = uri.getScheme();
+        URIScheme handler = schemeHandlers.get( scheme );
+        if( !(handler instanceof CacheableURIScheme) ) {
+            return URICachePolicy.Never;
+        }
+        URICachePolicy policy = ((CacheableURIScheme)handler).getCachePolicy();
+        if( !schemeNames.contains( scheme ) ) {
+            schemeNames.add( scheme );
+        }
+        for( CompoundURI param : uri.getParameters().values() ) {
+            if( !policy.isCacheable() ) {
+                break;
+            }
+            policy = URICachePolicy.min( policy, getCachePolicy( param, schemeNames ) );
+        }
+        return policy;
+    }
+
     /**
      * Return a copy of this handler with a modified scheme context.
      * The scheme context is modified by mapping the scheme name of the URI argument to the URI
@@ -215,7 +512,18 @@ public class StandardURIHandler implements URIHandler {
      */
     @Override
     public URIHandler modifySchemeContext(CompoundURI uri) {
-        return new StandardURIHandler( this, uri );
+        String scheme = uri.getScheme();
+        if( uri.equals( schemeContexts.get( scheme ) ) ) {
+            // Scheme context is unchanged.
+            return this;
+        }
+        PersistentMap<String,CompoundURI> contexts = schemeContexts.plus( scheme, uri );
+        StandardURIHandler handler = handlerCopies.get( contexts );
+        if( handler == null ) {
+            handler = new StandardURIHandler( this, contexts );
+            handlerCopies.put( contexts, handler );
+        }
+        return handler;
     }
 
     /**
@@ -224,6 +532,7 @@ public class StandardURIHandler implements URIHandler {
     @Override
     public URIHandler replaceURIScheme(String schemeName, URIScheme scheme) {
         schemeHandlers.put( schemeName, scheme );
+        dereferenceCache.invalidateScheme( schemeName );
         return this;
     }
 
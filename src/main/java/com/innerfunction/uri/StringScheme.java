@@ -20,7 +20,7 @@ import java.util.Map;
 
 import com.innerfunction.util.StringTemplate;
 
-public class StringScheme implements URIScheme {
+public class StringScheme implements CacheableURIScheme {
 
     private Context context;
 
@@ -37,4 +37,10 @@ public class StringScheme implements URIScheme {
         }
         return Uri.decode( value );
     }
+
+    /** String values are fully determined by the URI and its parameters. */
+    @Override
+    public URICachePolicy getCachePolicy() {
+        return URICachePolicy.Immutable;
+    }
 }
@@ -0,0 +1,79 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.uri;
+
+/**
+ * A policy describing whether, and for how long, the results of dereferencing a URI may be cached.
+ * @see CacheableURIScheme
+ */
+public final class URICachePolicy {
+
+    /** A policy for URIs whose values must never be cached. */
+    public static final URICachePolicy Never = new URICachePolicy( 0 );
+    /** A policy for URIs whose values never change, and can be cached indefinitely. */
+    public static final URICachePolicy Immutable = new URICachePolicy( Long.MAX_VALUE );
+
+    /** The time, in milliseconds, that a value can be cached for. */
+    private final long ttl;
+
+    private URICachePolicy(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Return a policy for values which can be cached for a limited time.
+     * @param ttl   The time-to-live of cached values, in milliseconds.
+     */
+    public static URICachePolicy withTTL(long ttl) {
+        return ttl > 0 ? new URICachePolicy( ttl ) : Never;
+    }
+
+    /** Get the time, in milliseconds, that a value can be cached for. */
+    public long getTTL() {
+        return ttl;
+    }
+
+    /** Test whether values can be cached under this policy. */
+    public boolean isCacheable() {
+        return ttl > 0;
+    }
+
+    /**
+     * Return the most restrictive of two policies.
+     * Used to find the policy for a URI with parameters, which can only be cached for as long as
+     * all of its parameter values can be cached.
+     */
+    static URICachePolicy min(URICachePolicy p0, URICachePolicy p1) {
+        return p0.ttl <= p1.ttl ? p0 : p1;
+    }
+
+    /**
+     * Return the time at which a value cached under this policy will expire.
+     * @param now   The current time, in milliseconds.
+     */
+    long expiryTimeFrom(long now) {
+        return ttl == Long.MAX_VALUE ? Long.MAX_VALUE : now + ttl;
+    }
+
+    @Override
+    public String toString() {
+        if( this == Never ) {
+            return "Never";
+        }
+        if( this == Immutable ) {
+            return "Immutable";
+        }
+        return String.format("TTL %dms", ttl );
+    }
+}
@@ -0,0 +1,194 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.uri;
+
+import android.util.LruCache;
+
+import com.innerfunction.util.PersistentMap;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A cache of the values produced by dereferencing URIs.
+ * The cache is shared by a URI handler and all of the handler's copies (@see
+ * StandardURIHandler#modifySchemeContext). Values are keyed by URI and by the handler's scheme
+ * contexts, and are only cached for URIs in schemes which implement CacheableURIScheme; each
+ * value is cached for as long as its scheme's cache policy allows. Null values aren't cached.
+ * The cache is disabled by default, and is enabled by setting a maximum size; entries are evicted
+ * on a least-recently-used basis once the cache reaches its maximum size.
+ */
+public class URIDereferenceCache {
+
+    /** The cached values; null if the cache isn't enabled. */
+    private volatile LruCache<Key,Entry> entries;
+    /** Cache metrics: Number of values returned from the cache. */
+    private final AtomicInteger hitCount = new AtomicInteger( 0 );
+    /** Cache metrics: Number of lookups which didn't return a cached value. */
+    private final AtomicInteger missCount = new AtomicInteger( 0 );
+
+    /** A cache key. */
+    static final class Key {
+        /** The dereferenced URI. */
+        final CompoundURI uri;
+        /** The scheme contexts of the URI handler which dereferenced the URI. */
+        final Map<String,CompoundURI> schemeContexts;
+        /** The names of all schemes referenced by the URI, including by its parameters. */
+        final List<String> schemeNames;
+        /** The cache policy for the URI's value. */
+        final URICachePolicy policy;
+        /** The key's hash code. */
+        final int hashCode;
+
+        /**
+         * Create a new cache key.
+         * @param uri               The URI being dereferenced.
+         * @param schemeContexts    The URI handler's scheme contexts.
+         * @param schemeNames       The names of the schemes referenced by the URI.
+         * @param policy            The cache policy for the URI's value.
+         */
+        Key(CompoundURI uri, PersistentMap<String,CompoundURI> schemeContexts, List<String> schemeNames, URICachePolicy policy) {
+            this.uri = uri;
+            this.schemeContexts = schemeContexts;
+            this.schemeNames = schemeNames;
+            this.policy = policy;
+            // Note that persistent maps cache their hash code.
+            this.hashCode = 31 * uri.hashCode() + schemeContexts.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if( !(obj instanceof Key) ) {
+                return false;
+            }
+            Key key = (Key)obj;
+            return hashCode == key.hashCode
+                && uri.equals( key.uri )
+                && (schemeContexts == key.schemeContexts || schemeContexts.equals( key.schemeContexts ));
+        }
+    }
+
+    /** A cached value. */
+    static final class Entry {
+        final Object value;
+        /** The time at which the entry expires. */
+        final long expires;
+
+        Entry(Object value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * Set the maximum number of values held by the cache.
+     * Setting a size of zero or less disables the cache. Any values currently in the cache are
+     * discarded.
+     */
+    public void setMaxSize(int maxSize) {
+        entries = maxSize > 0 ? new LruCache<Key,Entry>( maxSize ) : null;
+    }
+
+    /** Test whether the cache is enabled. */
+    public boolean isEnabled() {
+        return entries != null;
+    }
+
+    /**
+     * Get a cached value.
+     * @return The cached value, or null if no unexpired value is cached for the key.
+     */
+    Object get(Key key) {
+        LruCache<Key,Entry> entries = this.entries;
+        if( entries != null ) {
+            Entry entry = entries.get( key );
+            if( entry != null ) {
+                if( entry.expires > System.currentTimeMillis() ) {
+                    hitCount.incrementAndGet();
+                    return entry.value;
+                }
+                entries.remove( key );
+            }
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /** Cache a value, according to the key's cache policy. */
+    void put(Key key, Object value) {
+        LruCache<Key,Entry> entries = this.entries;
+        if( entries != null && value != null && key.policy.isCacheable() ) {
+            long expires = key.policy.expiryTimeFrom( System.currentTimeMillis() );
+            entries.put( key, new Entry( value, expires ) );
+        }
+    }
+
+    /** Discard all cached values. */
+    public void invalidate() {
+        LruCache<Key,Entry> entries = this.entries;
+        if( entries != null ) {
+            entries.evictAll();
+        }
+    }
+
+    /** Discard all cached values for a URI. */
+    public void invalidate(CompoundURI uri) {
+        LruCache<Key,Entry> entries = this.entries;
+        if( entries != null ) {
+            for( Key key : entries.snapshot().keySet() ) {
+                if( key.uri.equals( uri ) ) {
+                    entries.remove( key );
+                }
+            }
+        }
+    }
+
+    /**
+     * Discard all cached values for URIs which reference a scheme.
+     * Includes URIs which reference the scheme in their parameters.
+     */
+    public void invalidateScheme(String schemeName) {
+        LruCache<Key,Entry> entries = this.entries;
+        if( entries != null ) {
+            for( Key key : entries.snapshot().keySet() ) {
+                if( key.schemeNames.contains( schemeName ) ) {
+                    entries.remove( key );
+                }
+            }
+        }
+    }
+
+    /** Get the number of values returned from the cache. */
+    public int getHitCount() {
+        return hitCount.get();
+    }
+
+    /** Get the number of lookups which didn't return a cached value. */
+    public int getMissCount() {
+        return missCount.get();
+    }
+
+    /** Get the cache's hit rate, as a fraction of all lookups. */
+    public float getHitRate() {
+        int hits = hitCount.get();
+        int total = hits + missCount.get();
+        return total > 0 ? (float)hits / total : 0f;
+    }
+}
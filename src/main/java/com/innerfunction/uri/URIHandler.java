@@ -13,6 +13,8 @@
 // limitations under the License
 package com.innerfunction.uri;
 
+import com.innerfunction.q.Q;
+
 import java.util.List;
 
 /**
@@ -35,6 +37,20 @@ public interface URIHandler {
      */
     Object dereference(String uri);
 
+    /**
+     * Dereference a URI asynchronously.
+     * @param uri A parsed compound URI. @see CompoundURI.
+     * @return A promise resolving to the dereferenced value. The value can be null.
+     */
+    Q.Promise<Object> dereferenceAsync(CompoundURI uri);
+
+    /**
+     * Dereference a URI asynchronously.
+     * @param uri An unparsed compound URI string. @see CompoundURI.
+     * @return A promise resolving to the dereferenced value. The value can be null.
+     */
+    Q.Promise<Object> dereferenceAsync(String uri);
+
     /**
      * Return a new URI handler with a modified scheme context (used to dereference relative URIs).
      */
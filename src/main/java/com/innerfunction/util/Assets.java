@@ -13,8 +13,12 @@
 // limitations under the License
 package com.innerfunction.util;
 
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -22,6 +26,7 @@ import java.util.Map;
 import java.util.Set;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
 import android.util.Log;
 
@@ -32,6 +37,18 @@ public class Assets {
 
     static final String Tag = Assets.class.getSimpleName();
 
+    /**
+     * The name of the app's configuration bundle asset.
+     * Note that the bundle should be packaged uncompressed, so that it can be memory mapped, i.e.
+     * add <code>aaptOptions { noCompress 'bundle' }</code> to the app's build file.
+     */
+    public static final String ConfigurationBundleName = "pttn/config.bundle";
+
+    /** The app's configuration bundle; null if the app doesn't have a bundle. */
+    private static ConfigurationBundle configurationBundle;
+    /** A flag indicating that the app's configuration bundle has been loaded. */
+    private static boolean configurationBundleLoaded;
+
     private AssetManager assetManager;
     private Map<String,Set<String>> assetNamesByPath;
 
@@ -45,6 +62,60 @@ public class Assets {
         return this.assetManager.open( name );
     }
 
+    /**
+     * Map a named asset into memory.
+     * Uncompressed assets are memory mapped directly from the app package; compressed assets
+     * can't be mapped, and are read into a heap buffer instead.
+     * @return A read-only buffer containing the asset's data.
+     */
+    public ByteBuffer mapAsset(String name) throws IOException {
+        AssetFileDescriptor fd;
+        try {
+            fd = this.assetManager.openFd( name );
+        }
+        catch(FileNotFoundException e) {
+            // Thrown for compressed assets.
+            return ByteBuffer.wrap( Files.readData( openInputStream( name ), name ) ).asReadOnlyBuffer();
+        }
+        try {
+            FileInputStream in = fd.createInputStream();
+            try {
+                FileChannel channel = in.getChannel();
+                return channel.map( FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength() );
+            }
+            finally {
+                in.close();
+            }
+        }
+        finally {
+            fd.close();
+        }
+    }
+
+    /**
+     * Get the app's configuration bundle.
+     * The bundle is generated at build time by the pttn-compiler annotation processor, and
+     * contains compiled versions of the app's JSON configuration files. The bundle is loaded
+     * once, when first requested, and then shared by all users.
+     * @return The configuration bundle, or null if the app doesn't have a bundle.
+     */
+    public ConfigurationBundle getConfigurationBundle() {
+        synchronized( Assets.class ) {
+            if( !configurationBundleLoaded ) {
+                configurationBundleLoaded = true;
+                if( assetExists( ConfigurationBundleName ) ) {
+                    try {
+                        configurationBundle = ConfigurationBundle.open( mapAsset( ConfigurationBundleName ) );
+                    }
+                    catch(IOException e) {
+                        Log.e( Tag, String.format("Failed to load configuration bundle %s", ConfigurationBundleName ), e );
+                    }
+                }
+            }
+            return configurationBundle;
+        }
+    }
+
     /** Test whether a name asset exists. */
     public boolean assetExists(String assetName) {
         // Note: following necessary to detect whether the referenced asset exists. This
@@ -0,0 +1,171 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.util;
+
+import android.util.LruCache;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A key path compiled into a form which can be efficiently resolved many times.
+ * The key path is split into its keys once, when compiled; keys are interned, and keys which are
+ * valid list indexes are parsed to integers. Each key also caches the property used to read its
+ * value from the last class of object it was resolved on, so that repeated lookups on objects of
+ * the same class don't need to lookup the class' properties.
+ * Compiled key paths are immutable (apart from their internal caches) and thread safe.
+ * @see KeyPath
+ */
+public final class CompiledKeyPath {
+
+    /** The maximum number of compiled key paths cached by the compile() method. */
+    static final int CacheSize = 500;
+
+    /** A cache of previously compiled key paths. */
+    static final LruCache<String,CompiledKeyPath> CompiledKeyPaths = new LruCache<>( CacheSize );
+
+    /** The key path. */
+    private final String keyPath;
+    /** The key path's keys. */
+    private final Key[] keys;
+
+    /** A single key in a compiled key path. */
+    static final class Key {
+        /** The key, as used for map lookups and property names. */
+        final String name;
+        /** The key parsed as a list index; null if the key isn't a valid integer. */
+        final Integer index;
+        /** The property last used to read the key from an object. */
+        private volatile PropertyRef propertyRef;
+
+        Key(String name) {
+            this.name = name.intern();
+            Integer index = null;
+            try {
+                index = Integer.valueOf( name );
+            }
+            catch(NumberFormatException e) {
+                // Key isn't a list index.
+            }
+            this.index = index;
+        }
+
+        /** Read the key's value from an object using reflection. */
+        Object getPropertyValue(Object object) {
+            Class<?> type = object.getClass();
+            PropertyRef ref = propertyRef;
+            if( ref == null || ref.type != type ) {
+                Property property = Property.getPropertiesForClass( type ).get( name );
+                ref = propertyRef = new PropertyRef( type, property );
+            }
+            return ref.property != null ? ref.property.get( object ) : null;
+        }
+    }
+
+    /** A property resolved for a class; the property is null if the class has no such property. */
+    static final class PropertyRef {
+        final Class<?> type;
+        final Property property;
+
+        PropertyRef(Class<?> type, Property property) {
+            this.type = type;
+            this.property = property;
+        }
+    }
+
+    private CompiledKeyPath(String keyPath) {
+        this.keyPath = keyPath;
+        // Note that String.split is used (instead of e.g. scanning for dot characters) so that
+        // compiled key paths have exactly the same keys as the original key path implementation.
+        String[] names = keyPath.indexOf('.') < 0 ? new String[]{ keyPath } : keyPath.split("\\.");
+        this.keys = new Key[names.length];
+        for( int i = 0; i < names.length; i++ ) {
+            keys[i] = new Key( names[i] );
+        }
+    }
+
+    /**
+     * Compile a key path.
+     * Returns a cached result if the same key path was compiled recently.
+     */
+    public static CompiledKeyPath compile(String keyPath) {
+        CompiledKeyPath result = CompiledKeyPaths.get( keyPath );
+        if( result == null ) {
+            result = new CompiledKeyPath( keyPath );
+            CompiledKeyPaths.put( keyPath, result );
+        }
+        return result;
+    }
+
+    /** Get the key path. */
+    public String getKeyPath() {
+        return keyPath;
+    }
+
+    /** Get the number of keys in the key path. */
+    public int getKeyCount() {
+        return keys.length;
+    }
+
+    /**
+     * Resolve the key path on a root object.
+     * No value modifications are performed.
+     * @param rootValue The root object.
+     * @return The resolved value, or null if the value can't be resolved.
+     */
+    public Object resolve(Object rootValue) {
+        return resolve( rootValue, null, null );
+    }
+
+    /**
+     * Resolve the key path on a root object.
+     * @param rootValue The root object.
+     * @param context   An optional object providing context information. Can be null.
+     * @param modifier  An object used to modify objects and values as the key path is resolved.
+     *                  Can be null, in which case no modifications are done.
+     * @return The resolved value, or null if the value can't be resolved.
+     */
+    public <T> Object resolve(Object rootValue, T context, KeyPath.Modifier<T> modifier) {
+        int i = 0;
+        Object value = rootValue;
+        while( value != null && i < keys.length ) {
+            Key key = keys[i];
+            if( modifier != null ) {
+                value = modifier.modifyObject( key.name, value, context );
+            }
+            if( value instanceof Map ) {
+                // Attempt to read the next value using the key as the map key.
+                value = ((Map)value).get( key.name );
+            }
+            else if( value instanceof List ) {
+                // Attempt to read the next value using the key as the list index.
+                value = key.index != null ? ((List)value).get( key.index ) : null;
+            }
+            else if( value != null ) {
+                // Try using reflection to read a value from the object.
+                value = key.getPropertyValue( value );
+            }
+            if( modifier != null ) {
+                value = modifier.modifyValue( key.name, value, context );
+            }
+            i++;
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return keyPath;
+    }
+}
@@ -0,0 +1,432 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.util;
+
+import org.json.simple.JSONValue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * A compiled bundle of an app's configuration files.
+ * The bundle is generated at build time by the pttn-compiler annotation processor, from the app
+ * configuration and all of the JSON files it references using app: URIs, and is packaged as an
+ * app asset (@see Assets#getConfigurationBundle). The bundle is read directly from a memory
+ * mapped buffer; documents are returned as read-only Map and List views whose values are read
+ * from the buffer as they are accessed, so no parsing is needed when loading the configuration.
+ * The bundle records the length and CRC32 checksum of each document's source file, so that
+ * documents whose source has changed since the bundle was generated can be detected and ignored.
+ *
+ * Bundle format (all integers are big-endian):
+ * <pre>
+ *   header:    magic ("PTNB"), version, string count, string table offset, document count,
+ *              document table offset (six u32 values)
+ *   strings:   a table of u32 offsets to string records, each a u32 byte length followed by the
+ *              string's UTF-8 bytes. Strings are stored once, and sorted in string order.
+ *   documents: a table of (u32 name string index, u32 value offset, u32 source byte length,
+ *              u32 source CRC32) entries, sorted by name.
+ *   values:    a one byte tag followed by the value:
+ *              null, false, true: no data;
+ *              long, double:      8 bytes;
+ *              string:            u32 string index;
+ *              object:            u32 count, then count (u32 key string index, u32 value offset)
+ *                                 pairs sorted by key;
+ *              array:             u32 count, then count u32 value offsets.
+ * </pre>
+ * Values are returned using the same types as the json-simple parser, i.e. String, Long, Double,
+ * Boolean and null, with objects and arrays returned as Map and List instances. Each object and
+ * array view is created once and then reused, so repeated reads of the same value return the
+ * same instance.
+ */
+public class ConfigurationBundle {
+
+    /** The bundle file magic number, "PTNB". */
+    static final int Magic = 0x50544E42;
+    /** The bundle format version. */
+    static final int Version = 2;
+    /** The size of the bundle header. */
+    static final int HeaderSize = 24;
+    /** The size of a document table entry. */
+    static final int DocumentEntrySize = 16;
+
+    static final byte NullTag = 0;
+    static final byte FalseTag = 1;
+    static final byte TrueTag = 2;
+    static final byte LongTag = 3;
+    static final byte DoubleTag = 4;
+    static final byte StringTag = 5;
+    static final byte ObjectTag = 6;
+    static final byte ArrayTag = 7;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The bundle data. */
+    private final ByteBuffer data;
+    /** The number of strings in the string table. */
+    private final int stringCount;
+    /** The position of the string table. */
+    private final int stringTableOffset;
+    /** The number of documents in the bundle. */
+    private final int documentCount;
+    /** The position of the document table. */
+    private final int documentTableOffset;
+    /**
+     * Decoded strings, indexed by string table index.
+     * Strings are decoded when first used, and then shared by all values using the same string.
+     */
+    private final String[] strings;
+    /**
+     * Object and array views, keyed by value offset.
+     * Views are created when first read and then shared, so that each value in the bundle has a
+     * stable identity (e.g. for Configuration's memoized value configurations).
+     */
+    private final ConcurrentHashMap<Integer,Object> views = new ConcurrentHashMap<>();
+
+    private ConfigurationBundle(ByteBuffer data) throws IOException {
+        this.data = data;
+        if( data.limit() < HeaderSize || data.getInt( 0 ) != Magic ) {
+            throw new IOException("Not a configuration bundle");
+        }
+        if( data.getInt( 4 ) != Version ) {
+            throw new IOException( String.format("Unsupported configuration bundle version %d", data.getInt( 4 ) ) );
+        }
+        this.stringCount = data.getInt( 8 );
+        this.stringTableOffset = data.getInt( 12 );
+        this.documentCount = data.getInt( 16 );
+        this.documentTableOffset = data.getInt( 20 );
+        this.strings = new String[stringCount];
+    }
+
+    /**
+     * Open a configuration bundle.
+     * @param buffer    A buffer containing the bundle data, e.g. a memory mapped asset. The bundle
+     *                  is read from the buffer's position to its limit.
+     * @throws IOException If the buffer doesn't contain a valid bundle.
+     */
+    public static ConfigurationBundle open(ByteBuffer buffer) throws IOException {
+        return new ConfigurationBundle( buffer.slice() );
+    }
+
+    /** Get the names of the documents in the bundle. */
+    public List<String> getDocumentNames() {
+        List<String> names = new ArrayList<>( documentCount );
+        for( int i = 0; i < documentCount; i++ ) {
+            names.add( getString( data.getInt( documentTableOffset + i * DocumentEntrySize ) ) );
+        }
+        return names;
+    }
+
+    /** Test whether the bundle contains a named document. */
+    public boolean hasDocument(String name) {
+        return findDocument( name ) > -1;
+    }
+
+    /**
+     * Get a document from the bundle.
+     * Note that the document isn't checked against its source; @see getDocument(String,ByteBuffer).
+     * @param name  The document name, i.e. the document's asset name.
+     * @return The document's data, or null if the bundle doesn't contain the named document.
+     */
+    public Object getDocument(String name) {
+        int entry = findDocument( name );
+        return entry > -1 ? readValue( data.getInt( entry + 4 ) ) : null;
+    }
+
+    /**
+     * Get a document from the bundle, if it is up to date with its source.
+     * @param name      The document name, i.e. the document's asset name.
+     * @param source    A buffer containing the current contents of the document's source file.
+     *                  The buffer's position is unaffected.
+     * @return The document's data, or null if the bundle doesn't contain the named document, or
+     * if the source's length or checksum differ from those recorded when the bundle was generated.
+     */
+    public Object getDocument(String name, ByteBuffer source) {
+        int entry = findDocument( name );
+        if( entry < 0 ) {
+            return null;
+        }
+        long length = data.getInt( entry + 8 ) & 0xFFFFFFFFL;
+        long crc = data.getInt( entry + 12 ) & 0xFFFFFFFFL;
+        if( source.remaining() != length || checksum( source ) != crc ) {
+            return null;
+        }
+        return readValue( data.getInt( entry + 4 ) );
+    }
+
+    /**
+     * Find a document's entry in the document table.
+     * @return The position of the document's entry, or -1 if the document isn't found.
+     */
+    private int findDocument(String name) {
+        int low = 0, high = documentCount - 1;
+        while( low <= high ) {
+            int mid = (low + high) >>> 1;
+            int entry = documentTableOffset + mid * DocumentEntrySize;
+            int cmp = getString( data.getInt( entry ) ).compareTo( name );
+            if( cmp < 0 ) {
+                low = mid + 1;
+            }
+            else if( cmp > 0 ) {
+                high = mid - 1;
+            }
+            else {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    /** Calculate the CRC32 checksum of a buffer's remaining contents. */
+    static long checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        if( buffer.hasArray() ) {
+            crc.update( buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining() );
+        }
+        else {
+            ByteBuffer in = buffer.duplicate();
+            byte[] chunk = new byte[8192];
+            while( in.hasRemaining() ) {
+                int length = Math.min( chunk.length, in.remaining() );
+                in.get( chunk, 0, length );
+                crc.update( chunk, 0, length );
+            }
+        }
+        return crc.getValue();
+    }
+
+    /** Get a string from the string table. */
+    String getString(int index) {
+        String s = strings[index];
+        if( s == null ) {
+            int offset = data.getInt( stringTableOffset + index * 4 );
+            int length = data.getInt( offset );
+            byte[] bytes = new byte[length];
+            ByteBuffer buffer = data.duplicate();
+            buffer.position( offset + 4 );
+            buffer.get( bytes );
+            // Note that concurrent decodes of the same string are harmless.
+            s = strings[index] = new String( bytes, UTF8 );
+        }
+        return s;
+    }
+
+    /** Read the value at the specified position. */
+    Object readValue(int offset) {
+        switch( data.get( offset ) ) {
+        case NullTag:
+            return null;
+        case FalseTag:
+            return Boolean.FALSE;
+        case TrueTag:
+            return Boolean.TRUE;
+        case LongTag:
+            return data.getLong( offset + 1 );
+        case DoubleTag:
+            return data.getDouble( offset + 1 );
+        case StringTag:
+            return getString( data.getInt( offset + 1 ) );
+        case ObjectTag:
+        case ArrayTag:
+            return getView( offset );
+        default:
+            throw new IllegalStateException( String.format("Bad configuration bundle value tag at %d", offset ) );
+        }
+    }
+
+    /** Get the shared object or array view of the value at the specified position. */
+    private Object getView(int offset) {
+        Integer key = offset;
+        Object view = views.get( key );
+        if( view == null ) {
+            view = data.get( offset ) == ObjectTag ? new BundleObject( offset ) : new BundleArray( offset );
+            Object existing = views.putIfAbsent( key, view );
+            if( existing != null ) {
+                view = existing;
+            }
+        }
+        return view;
+    }
+
+    /**
+     * A read-only view of an object in the bundle.
+     * The object's hash code is calculated once and then cached.
+     */
+    final class BundleObject extends AbstractMap<String,Object> {
+
+        /** The number of object entries. */
+        private final int size;
+        /** The position of the object's first entry. */
+        private final int entries;
+        /** The object's hash code; zero if not yet calculated. */
+        private int hashCode;
+
+        BundleObject(int offset) {
+            this.size = data.getInt( offset + 1 );
+            this.entries = offset + 5;
+        }
+
+        /** Find the index of the entry with the specified key; returns -1 if not found. */
+        private int indexOf(Object key) {
+            if( !(key instanceof String) ) {
+                return -1;
+            }
+            int low = 0, high = size - 1;
+            while( low <= high ) {
+                int mid = (low + high) >>> 1;
+                int cmp = getKey( mid ).compareTo( (String)key );
+                if( cmp < 0 ) {
+                    low = mid + 1;
+                }
+                else if( cmp > 0 ) {
+                    high = mid - 1;
+                }
+                else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        String getKey(int index) {
+            return getString( data.getInt( entries + index * 8 ) );
+        }
+
+        Object getValue(int index) {
+            return readValue( data.getInt( entries + index * 8 + 4 ) );
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexOf( key ) > -1;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int index = indexOf( key );
+            return index > -1 ? getValue( index ) : null;
+        }
+
+        @Override
+        public Set<Entry<String,Object>> entrySet() {
+            return new AbstractSet<Entry<String,Object>>() {
+                @Override
+                public int size() {
+                    return size;
+                }
+                @Override
+                public Iterator<Entry<String,Object>> iterator() {
+                    return new Iterator<Entry<String,Object>>() {
+                        int index = 0;
+                        @Override
+                        public boolean hasNext() {
+                            return index < size;
+                        }
+                        @Override
+                        public Entry<String,Object> next() {
+                            if( index >= size ) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String,Object> entry = new SimpleImmutableEntry<>( getKey( index ), getValue( index ) );
+                            index++;
+                            return entry;
+                        }
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            };
+        }
+
+        @Override
+        public int hashCode() {
+            // Note that concurrent calculations of the hash code are harmless.
+            int h = hashCode;
+            if( h == 0 ) {
+                h = hashCode = super.hashCode();
+            }
+            return h;
+        }
+
+        @Override
+        public String toString() {
+            return JSONValue.toJSONString( this );
+        }
+    }
+
+    /**
+     * A read-only view of an array in the bundle.
+     * The array's hash code is calculated once and then cached.
+     */
+    final class BundleArray extends AbstractList<Object> implements RandomAccess {
+
+        /** The number of array items. */
+        private final int size;
+        /** The position of the array's first item offset. */
+        private final int items;
+        /** The array's hash code; zero if not yet calculated. */
+        private int hashCode;
+
+        BundleArray(int offset) {
+            this.size = data.getInt( offset + 1 );
+            this.items = offset + 5;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Object get(int index) {
+            if( index < 0 || index >= size ) {
+                throw new IndexOutOfBoundsException( String.format("Index %d, size %d", index, size ) );
+            }
+            return readValue( data.getInt( items + index * 4 ) );
+        }
+
+        @Override
+        public int hashCode() {
+            // Note that concurrent calculations of the hash code are harmless.
+            int h = hashCode;
+            if( h == 0 ) {
+                h = hashCode = super.hashCode();
+            }
+            return h;
+        }
+
+        @Override
+        public String toString() {
+            return JSONValue.toJSONString( this );
+        }
+    }
+}
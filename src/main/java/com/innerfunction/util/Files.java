@@ -22,8 +22,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringBufferInputStream;
+import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -52,6 +56,12 @@ public class Files {
 
     static final String LogTag = "Files";
 
+    /**
+     * The size, in bytes, above which file contents are memory mapped.
+     * Mapping a file has a fixed setup cost, so smaller files are read onto the heap instead.
+     */
+    public static final long MapThreshold = 256 * 1024;
+
     private Assets assets;
 
     public Files(Context context) {
@@ -210,7 +220,17 @@ public class Files {
         try {
             fin = new FileInputStream( file );
             data = new byte[ (int)file.length() ];
-            fin.read( data, 0, data.length );
+            // Note that a single read isn't guaranteed to fill the buffer.
+            int offset = 0;
+            while( offset < data.length ) {
+                int read = fin.read( data, offset, data.length - offset );
+                if( read < 0 ) {
+                    // File truncated since its length was read.
+                    data = Arrays.copyOf( data, offset );
+                    break;
+                }
+                offset += read;
+            }
         }
         catch(FileNotFoundException e){
             throw e;
@@ -229,21 +249,33 @@ public class Files {
 
     /**
      * Read data from an input stream and return as a byte array.
+     * Data is read directly into the result array, which is sized using the number of bytes
+     * available on the stream; the array is only copied if the stream's size isn't known in
+     * advance.
      * @param in    The input stream to read from.
      * @param name  A name (e.g. a filename) associated with the stream; used for logging.
      * @return A byte array containing the data.
      */
     public static byte[] readData(InputStream in, String name) {
-        ByteArrayOutputStream result = new ByteArrayOutputStream( 16384 );
+        byte[] data = new byte[0];
+        int offset = 0;
         try {
-            byte[] buffer = new byte[16384];
-            int read;
+            data = new byte[Math.max( in.available(), 16384 )];
             while( true ) {
-                read = in.read( buffer, 0, buffer.length );
-                if( read > 0 ) {
-                    result.write( buffer, 0, read );
+                if( offset == data.length ) {
+                    // Buffer full; check for end of stream before growing the buffer.
+                    int b = in.read();
+                    if( b < 0 ) {
+                        break;
+                    }
+                    data = Arrays.copyOf( data, data.length * 2 );
+                    data[offset++] = (byte)b;
+                }
+                int read = in.read( data, offset, data.length - offset );
+                if( read < 0 ) {
+                    break; // End of stream.
                 }
-                else break; // End of stream.
+                offset += read;
             }
         }
         catch(Exception e) {
@@ -255,7 +287,86 @@ public class Files {
             }
             catch(Exception e) {}
         }
-        return result.toByteArray();
+        return offset == data.length ? data : Arrays.copyOf( data, offset );
+    }
+
+    /**
+     * Read data from a file into a byte buffer.
+     * Files larger than MapThreshold are memory mapped, and their contents are read directly
+     * from the file system without being copied onto the heap; smaller files are read into a
+     * heap buffer. Note that a mapped buffer reflects any later changes to the file (and reading
+     * it after the file is truncated can fail), so mapped data should only be retained if the file
+     * isn't modified.
+     * @param file  The file to read.
+     * @return A read-only buffer containing the file's data.
+     * @throws IOException If the file can't be read.
+     */
+    public static ByteBuffer mapData(File file) throws IOException {
+        FileInputStream fin = new FileInputStream( file );
+        try {
+            FileChannel channel = fin.getChannel();
+            long size = channel.size();
+            if( size >= MapThreshold ) {
+                // Note that the mapping remains valid after the channel is closed.
+                return channel.map( FileChannel.MapMode.READ_ONLY, 0, size );
+            }
+            ByteBuffer buffer = ByteBuffer.allocate( (int)size );
+            while( buffer.hasRemaining() ) {
+                if( channel.read( buffer ) < 0 ) {
+                    break; // File truncated since its size was read.
+                }
+            }
+            buffer.flip();
+            return buffer.asReadOnlyBuffer();
+        }
+        finally {
+            fin.close();
+        }
+    }
+
+    /**
+     * An input stream reading from a byte buffer.
+     * Reads from a duplicate of the buffer, so the position of the original buffer is unaffected.
+     */
+    static class ByteBufferInputStream extends InputStream {
+
+        private ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer.duplicate();
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int offset, int length) {
+            if( length == 0 ) {
+                return 0;
+            }
+            int remaining = buffer.remaining();
+            if( remaining == 0 ) {
+                return -1;
+            }
+            length = Math.min( length, remaining );
+            buffer.get( b, offset, length );
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Open an input stream on a byte buffer.
+     * The stream reads from a duplicate of the buffer, so the position of the buffer is unaffected.
+     */
+    public static InputStream openInputStream(ByteBuffer buffer) {
+        return new ByteBufferInputStream( buffer );
     }
 
 
@@ -311,10 +422,46 @@ public class Files {
      * contains no data.
      */
     public static Object readJSON(File file) {
+        if( file.length() >= MapThreshold ) {
+            // Parse large files directly from a memory mapped buffer.
+            try {
+                return readJSON( mapData( file ), file.getAbsolutePath() );
+            }
+            catch(FileNotFoundException e) {
+                Log.e( LogTag, String.format("File not found %s", file.getAbsolutePath()));
+                return null;
+            }
+            catch(IOException e) {
+                Log.e( LogTag, String.format("Reading file %s", file.getPath() ), e );
+                return null;
+            }
+        }
         String json = readString( file );
         return json != null ? JSONValue.parse( json ) : null;
     }
 
+    /**
+     * Read JSON from a byte buffer.
+     * The buffer's UTF-8 contents are decoded as they are parsed, without first being copied
+     * into a byte array or string.
+     * @param buffer    The buffer to read from. The buffer's position is unaffected.
+     * @param name      A name (e.g. filename) associated with the buffer; used for logging.
+     * @return An object representing the parsed buffer contents, or null if the buffer doesn't
+     * contain valid JSON.
+     */
+    public static Object readJSON(ByteBuffer buffer, String name) {
+        try {
+            return JSONValue.parseWithException( new InputStreamReader( new ByteBufferInputStream( buffer ), "UTF-8") );
+        }
+        catch(ParseException e) {
+            Log.e( LogTag, String.format("Parsing JSON %s", name ), e );
+        }
+        catch(IOException e) {
+            Log.e( LogTag, String.format("Reading JSON %s", name ), e );
+        }
+        return null;
+    }
+
     /**
      * Read JSON from an input stream.
      * @param in        The stream to read from.
@@ -14,23 +14,37 @@
 package com.innerfunction.util;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.Locale;
+import java.util.TimeZone;
 
 /**
  * Helper class for handling ISO 8601 strings of the following format:
  * "2008-03-01T13:00:00+01:00". It also supports parsing the "Z" timezone.
+ *
+ * Strings are parsed and formatted directly, without regexes, date formats or intermediate
+ * strings; the epoch time of a date is calculated from its fields arithmetically, using the
+ * proleptic Gregorian calendar. The class has no state, so can be used from any thread.
+ * The following variants are accepted when parsing:
+ * <ul>
+ *     <li>A space in place of the T separating the date and time;</li>
+ *     <li>Fractional seconds, e.g. 13:00:00.250;</li>
+ *     <li>A space between the time and the time zone;</li>
+ *     <li>Z or UTC as the UTC time zone;</li>
+ *     <li>Time zone offsets with or without a colon, e.g. +01:00 or +0100.</li>
+ * </ul>
  */
 public final class ISO8601 {
 
-    /** Transform Calendar to ISO 8601 string. */
+    static final long MillisPerMinute = 60 * 1000;
+    static final long MillisPerHour = 60 * MillisPerMinute;
+    static final long MillisPerDay = 24 * MillisPerHour;
+
+    /** Transform Calendar to ISO 8601 string. The date is formatted in the calendar's time zone. */
     public static String fromCalendar(final Calendar calendar) {
-        Date date = calendar.getTime();
-        String formatted = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.getDefault() ).format(date);
-        return formatted.substring(0, 22) + ":" + formatted.substring(22);
+        long millis = calendar.getTimeInMillis();
+        return format( millis, calendar.getTimeZone().getOffset( millis ) );
     }
 
     /** Get current date and time formatted as ISO 8601 string. */
@@ -41,21 +55,8 @@ public final class ISO8601 {
     /**
      * Transform ISO 8601 string to Date.
      */
-    @SuppressWarnings("deprecation")
     public static Date toDate(final String iso8601string) throws ParseException {
-        // Replace Z or UTC at the end of the string with the time offset for UTC.
-        String s = iso8601string.replaceFirst("(Z|UTC)$", "+00:00");
-        // Replace a space after the date with T.
-        s = s.replaceFirst("^(\\d\\d\\d\\d-\\d\\d-\\d\\d) ","$1T");
-        // Remove a space after the time.
-        s = s.replaceFirst("(T\\d\\d:\\d\\d:\\d\\d) ","$1");
-        try {
-            s = s.substring(0, 22) + s.substring(23);
-        }
-        catch(IndexOutOfBoundsException e) {
-            throw new ParseException("Invalid length", s.length() );
-        }
-        return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.getDefault() ).parse(s);
+        return new Date( toMillis( iso8601string ) );
     }
 
     /** Transform ISO 8601 string to Calendar. 
@@ -66,4 +67,197 @@ public final class ISO8601 {
         calendar.setTime(date);
         return calendar;
     }
+
+    /**
+     * Transform ISO 8601 string to milliseconds since the epoch.
+     * @throws java.text.ParseException If the string isn't a valid ISO 8601 date and time.
+     */
+    public static long toMillis(final String s) throws ParseException {
+        int length = s.length();
+        int year = parseField( s, 0, 4, 0, 9999 );
+        expect( s, 4, '-');
+        int month = parseField( s, 5, 2, 1, 12 );
+        expect( s, 7, '-');
+        int day = parseField( s, 8, 2, 1, daysInMonth( year, month ) );
+        // The date and time are separated by a T or a space.
+        if( length <= 10 || (s.charAt( 10 ) != 'T' && s.charAt( 10 ) != ' ') ) {
+            throw new ParseException("Expected date and time separator", 10 );
+        }
+        int hour = parseField( s, 11, 2, 0, 23 );
+        expect( s, 13, ':');
+        int minute = parseField( s, 14, 2, 0, 59 );
+        expect( s, 16, ':');
+        // Note that a leap second is accepted, and is treated as the first second of the next minute.
+        int second = parseField( s, 17, 2, 0, 60 );
+        int pos = 19;
+        // Fractional seconds; digits beyond millisecond precision are ignored.
+        int millis = 0;
+        if( pos < length && s.charAt( pos ) == '.' ) {
+            pos++;
+            int digits = 0;
+            for( ; pos < length && isDigit( s.charAt( pos ) ); pos++, digits++ ) {
+                if( digits < 3 ) {
+                    millis = millis * 10 + (s.charAt( pos ) - '0');
+                }
+            }
+            if( digits == 0 ) {
+                throw new ParseException("Expected fractional seconds", pos );
+            }
+            for( ; digits < 3; digits++ ) {
+                millis *= 10;
+            }
+        }
+        if( pos < length && s.charAt( pos ) == ' ' ) {
+            pos++;
+        }
+        // Time zone.
+        long offset;
+        if( pos == length - 1 && s.charAt( pos ) == 'Z' ) {
+            offset = 0;
+        }
+        else if( pos == length - 3 && s.startsWith("UTC", pos ) ) {
+            offset = 0;
+        }
+        else if( pos < length && (s.charAt( pos ) == '+' || s.charAt( pos ) == '-') ) {
+            boolean negative = s.charAt( pos ) == '-';
+            int offsetHours = parseField( s, pos + 1, 2, 0, 23 );
+            pos += 3;
+            if( pos < length && s.charAt( pos ) == ':' ) {
+                pos++;
+            }
+            int offsetMinutes = parseField( s, pos, 2, 0, 59 );
+            pos += 2;
+            if( pos != length ) {
+                throw new ParseException("Unexpected characters after time zone", pos );
+            }
+            offset = offsetHours * MillisPerHour + offsetMinutes * MillisPerMinute;
+            if( negative ) {
+                offset = -offset;
+            }
+        }
+        else {
+            throw new ParseException("Expected time zone", pos );
+        }
+        return daysFromCivil( year, month, day ) * MillisPerDay
+            + hour * MillisPerHour
+            + minute * MillisPerMinute
+            + second * 1000L
+            + millis
+            - offset;
+    }
+
+    /**
+     * Format a time as an ISO 8601 string.
+     * @param millis    The time, in milliseconds since the epoch.
+     * @param offset    The time zone offset from UTC, in milliseconds.
+     * @return A string in the format yyyy-MM-ddTHH:mm:ss+hh:mm.
+     */
+    static String format(long millis, int offset) {
+        long local = millis + offset;
+        long days = local / MillisPerDay;
+        long time = local % MillisPerDay;
+        if( time < 0 ) {
+            days--;
+            time += MillisPerDay;
+        }
+        // Convert days since the epoch to a date; @see daysFromCivil().
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int doe = (int)(z - era * 146097);
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int day = doy - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        int seconds = (int)(time / 1000);
+        int offsetMinutes = Math.abs( offset ) / (int)MillisPerMinute;
+        char[] chars = new char[25];
+        writeDigits( chars, 0, year, 4 );
+        chars[4] = '-';
+        writeDigits( chars, 5, month, 2 );
+        chars[7] = '-';
+        writeDigits( chars, 8, day, 2 );
+        chars[10] = 'T';
+        writeDigits( chars, 11, seconds / 3600, 2 );
+        chars[13] = ':';
+        writeDigits( chars, 14, (seconds / 60) % 60, 2 );
+        chars[16] = ':';
+        writeDigits( chars, 17, seconds % 60, 2 );
+        chars[19] = offset < 0 ? '-' : '+';
+        writeDigits( chars, 20, offsetMinutes / 60, 2 );
+        chars[22] = ':';
+        writeDigits( chars, 23, offsetMinutes % 60, 2 );
+        return new String( chars );
+    }
+
+    /**
+     * Calculate the number of days between the epoch and a date.
+     * Uses the civil-from-days algorithm described at
+     * http://howardhinnant.github.io/date_algorithms.html
+     */
+    static long daysFromCivil(int year, int month, int day) {
+        if( month <= 2 ) {
+            year--;
+        }
+        int era = (year >= 0 ? year : year - 399) / 400;
+        int yoe = year - era * 400;
+        int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097L + doe - 719468;
+    }
+
+    /** Get the number of days in a month. */
+    static int daysInMonth(int year, int month) {
+        switch( month ) {
+        case 2:
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        case 4: case 6: case 9: case 11:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    /**
+     * Parse a fixed width numeric field.
+     * @throws ParseException If the field isn't numeric, or is outside of the specified range.
+     */
+    private static int parseField(String s, int pos, int width, int min, int max) throws ParseException {
+        if( pos + width > s.length() ) {
+            throw new ParseException("Invalid length", s.length() );
+        }
+        int value = 0;
+        for( int i = pos; i < pos + width; i++ ) {
+            char ch = s.charAt( i );
+            if( !isDigit( ch ) ) {
+                throw new ParseException("Expected digit", i );
+            }
+            value = value * 10 + (ch - '0');
+        }
+        if( value < min || value > max ) {
+            throw new ParseException("Field value out of range", pos );
+        }
+        return value;
+    }
+
+    /** Check that a string has a specific character at a position. */
+    private static void expect(String s, int pos, char ch) throws ParseException {
+        if( pos >= s.length() || s.charAt( pos ) != ch ) {
+            throw new ParseException( String.format("Expected '%c'", ch ), pos );
+        }
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    /** Write a zero padded number into a character array. */
+    private static void writeDigits(char[] chars, int pos, long value, int width) {
+        for( int i = pos + width - 1; i >= pos; i-- ) {
+            chars[i] = (char)('0' + value % 10);
+            value /= 10;
+        }
+    }
 }
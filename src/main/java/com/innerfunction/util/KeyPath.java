@@ -13,15 +13,16 @@
 // limitations under the License
 package com.innerfunction.util;
 
-import java.util.List;
-import java.util.Map;
-
 /**
  * A utility for providing key-path access to collections.
  * A key path is a string containing a series of keys separated by full-stops (.). Keys are used to
  * lookup values in Map instances; keys are converted to integers and used to lookup items in
  * List instances.
  * Values can be modified on the fly by using a Modifier instance.
+ * Key paths are compiled before being resolved, and recently used compiled key paths are cached;
+ * code which repeatedly resolves the same key path can also compile it once and keep a reference
+ * to the result.
+ * @see CompiledKeyPath
  * Attached by juliangoacher on 26/03/16.
  */
 public class KeyPath {
@@ -82,42 +83,7 @@ public class KeyPath {
      * @return The resolved value, or null if the value can't be resolved.
      */
     public static <T> Object resolve(String keyPath, Object rootValue, T context, Modifier<T> modifier) {
-        String[] keys = keyPath.split("\\.");
-        int i = 0;
-        Object value = rootValue;
-        while( value != null && i < keys.length ) {
-            if( modifier != null ) {
-                value = modifier.modifyObject( keys[i], value, context );
-            }
-            if( value instanceof Map) {
-                // Attempt to read the next value using the key as the map key.
-                value = ((Map)value).get( keys[i] );
-            }
-            else if( value instanceof List) {
-                try {
-                    // Attempt to read the next value using the key as the list index.
-                    int key = Integer.valueOf( keys[i] );
-                    value = ((List)value).get( key );
-                }
-                catch(NumberFormatException e) {
-                    value = null;
-                }
-            }
-            else {
-                // Try using reflection to read a value from the object.
-                Map<String,Property> properties = Property.getPropertiesForObject( value );
-                Property property = properties.get( keys[i] );
-                if( property != null ) {
-                    value = property.get( value );
-                }
-                else value = null;
-            }
-            if( modifier != null ) {
-                value = modifier.modifyValue( keys[i], value, context );
-            }
-            i++;
-        }
-        return value;
+        return CompiledKeyPath.compile( keyPath ).resolve( rootValue, context, modifier );
     }
 
     /**
@@ -0,0 +1,653 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.util;
+
+import org.json.simple.JSONValue;
+import org.json.simple.parser.ParseException;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * A lazily materialized JSON parser.
+ * Parses UTF-8 encoded JSON from a byte buffer (e.g. a memory mapped file, @see Files#mapData)
+ * to standard Map and List instances whose contents are only read from the buffer when first
+ * accessed. Parsing a document performs a single validating scan over the buffer, without
+ * creating any objects; each JSON object or array is then indexed the first time any of its
+ * values is accessed, and any nested objects and arrays are left unread in the buffer until
+ * they are in turn accessed.
+ *
+ * Values are returned using the same types as the json-simple parser, i.e. String, Long,
+ * Double, Boolean and null, with objects and arrays returned as read-only Map and List instances,
+ * so that parsed data can be safely shared. Note that the buffer must not be modified once parsed.
+ *
+ * Object keys and short string values can optionally be interned as they are read, so that
+ * repeated names and values share a single string instance (@see StringInterner).
+ */
+public final class LazyJSON {
+
+    private LazyJSON() {}
+
+    /**
+     * Parse JSON from a byte buffer.
+     * @param buffer    A buffer containing UTF-8 encoded JSON. The document is read from the
+     *                  buffer's position to its limit; the buffer's position is unaffected.
+     * @return The parsed value.
+     * @throws ParseException If the buffer doesn't contain a valid JSON document.
+     */
+    public static Object parse(ByteBuffer buffer) throws ParseException {
+        return parse( buffer, null );
+    }
+
+    /**
+     * Parse JSON from a byte buffer, interning strings as they are read.
+     * @param buffer    A buffer containing UTF-8 encoded JSON.
+     * @param interner  A table used to intern object keys and string values; may be null.
+     * @return The parsed value.
+     * @throws ParseException If the buffer doesn't contain a valid JSON document.
+     */
+    public static Object parse(ByteBuffer buffer, StringInterner interner) throws ParseException {
+        Scanner scanner = new Scanner( buffer.slice(), interner );
+        int start = scanner.skipWhitespace( 0 );
+        int end = scanner.skipValue( start );
+        if( scanner.skipWhitespace( end ) < scanner.limit ) {
+            throw scanner.unexpected( scanner.skipWhitespace( end ) );
+        }
+        return scanner.readValue( start, end );
+    }
+
+    /**
+     * Test whether a buffer appears to contain JSON.
+     * Uses the same test as TypeConversions.asJSONData(), i.e. the first non-whitespace
+     * character must be one of { [ " or a digit, or be the start of true or false.
+     */
+    public static boolean isJSON(ByteBuffer buffer) {
+        ByteBuffer data = buffer.slice();
+        int limit = data.limit();
+        int pos = 0;
+        while( pos < limit && isWhitespace( data.get( pos ) ) ) {
+            pos++;
+        }
+        if( pos < limit ) {
+            byte b = data.get( pos );
+            switch( b ) {
+            case '{': case '[': case '"':
+                return true;
+            case 't':
+                return matches( data, pos, "true");
+            case 'f':
+                return matches( data, pos, "false");
+            default:
+                return b >= '0' && b <= '9';
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return a read-only form of parsed JSON data.
+     * Lazily parsed data and configuration bundle data are already read-only, and are returned
+     * unchanged. Other JSON objects and arrays (e.g. data parsed by json-simple) are copied to
+     * read-only objects and arrays of the same kind as those returned by the lazy parser.
+     */
+    public static Object toReadOnly(Object value) {
+        if( value instanceof LazyObject || value instanceof LazyArray
+         || value instanceof ConfigurationBundle.BundleObject || value instanceof ConfigurationBundle.BundleArray ) {
+            return value;
+        }
+        if( value instanceof Map ) {
+            Map<?,?> map = (Map<?,?>)value;
+            Map<String,Object> entries = new HashMap<>( map.size() );
+            for( Map.Entry<?,?> entry : map.entrySet() ) {
+                entries.put( String.valueOf( entry.getKey() ), toReadOnly( entry.getValue() ) );
+            }
+            return new LazyObject( entries );
+        }
+        if( value instanceof List ) {
+            List<?> list = (List<?>)value;
+            List<Object> items = new ArrayList<>( list.size() );
+            for( Object item : list ) {
+                items.add( toReadOnly( item ) );
+            }
+            return new LazyArray( items );
+        }
+        return value;
+    }
+
+    static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+    }
+
+    static boolean matches(ByteBuffer data, int pos, String literal) {
+        int length = literal.length();
+        if( pos + length > data.limit() ) {
+            return false;
+        }
+        for( int i = 0; i < length; i++ ) {
+            if( data.get( pos + i ) != literal.charAt( i ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A scanner over a buffer containing a JSON document.
+     * The scanner is stateless, and only performs absolute reads on the buffer, so can be safely
+     * shared by all of the lazy values read from the same document.
+     */
+    static final class Scanner {
+
+        final ByteBuffer data;
+        final int limit;
+        /** A table for interning strings read from the document; or null. */
+        final StringInterner interner;
+
+        Scanner(ByteBuffer data, StringInterner interner) {
+            this.data = data;
+            this.limit = data.limit();
+            this.interner = interner;
+        }
+
+        ParseException unexpected(int pos) {
+            if( pos < limit ) {
+                return new ParseException( pos, ParseException.ERROR_UNEXPECTED_CHAR, Character.valueOf( (char)(data.get( pos ) & 0xFF) ) );
+            }
+            return new ParseException( pos, ParseException.ERROR_UNEXPECTED_TOKEN, null );
+        }
+
+        int skipWhitespace(int pos) {
+            while( pos < limit && isWhitespace( data.get( pos ) ) ) {
+                pos++;
+            }
+            return pos;
+        }
+
+        /**
+         * Skip over and validate a JSON value.
+         * @param pos   The position of the start of the value.
+         * @return The position immediately following the end of the value.
+         */
+        int skipValue(int pos) throws ParseException {
+            if( pos >= limit ) {
+                throw unexpected( pos );
+            }
+            switch( data.get( pos ) ) {
+            case '{':
+                pos = skipWhitespace( pos + 1 );
+                if( pos < limit && data.get( pos ) == '}' ) {
+                    return pos + 1;
+                }
+                while( true ) {
+                    if( pos >= limit || data.get( pos ) != '"' ) {
+                        throw unexpected( pos );
+                    }
+                    pos = skipWhitespace( skipString( pos ) );
+                    if( pos >= limit || data.get( pos ) != ':' ) {
+                        throw unexpected( pos );
+                    }
+                    pos = skipWhitespace( skipValue( skipWhitespace( pos + 1 ) ) );
+                    if( pos < limit && data.get( pos ) == ',' ) {
+                        pos = skipWhitespace( pos + 1 );
+                    }
+                    else if( pos < limit && data.get( pos ) == '}' ) {
+                        return pos + 1;
+                    }
+                    else {
+                        throw unexpected( pos );
+                    }
+                }
+            case '[':
+                pos = skipWhitespace( pos + 1 );
+                if( pos < limit && data.get( pos ) == ']' ) {
+                    return pos + 1;
+                }
+                while( true ) {
+                    pos = skipWhitespace( skipValue( pos ) );
+                    if( pos < limit && data.get( pos ) == ',' ) {
+                        pos = skipWhitespace( pos + 1 );
+                    }
+                    else if( pos < limit && data.get( pos ) == ']' ) {
+                        return pos + 1;
+                    }
+                    else {
+                        throw unexpected( pos );
+                    }
+                }
+            case '"':
+                return skipString( pos );
+            case 't':
+                return skipLiteral( pos, "true");
+            case 'f':
+                return skipLiteral( pos, "false");
+            case 'n':
+                return skipLiteral( pos, "null");
+            default:
+                return skipNumber( pos );
+            }
+        }
+
+        /** Skip over a string, including its opening and closing quotes. */
+        int skipString(int pos) throws ParseException {
+            pos++;
+            while( pos < limit ) {
+                byte b = data.get( pos );
+                if( b == '"' ) {
+                    return pos + 1;
+                }
+                if( b == '\\' ) {
+                    pos++;
+                    if( pos >= limit ) {
+                        break;
+                    }
+                    switch( data.get( pos ) ) {
+                    case '"': case '\\': case '/': case 'b': case 'f': case 'n': case 'r': case 't':
+                        break;
+                    case 'u':
+                        for( int i = 0; i < 4; i++ ) {
+                            if( ++pos >= limit || Character.digit( data.get( pos ), 16 ) < 0 ) {
+                                throw unexpected( pos );
+                            }
+                        }
+                        break;
+                    default:
+                        throw unexpected( pos );
+                    }
+                }
+                pos++;
+            }
+            throw unexpected( limit );
+        }
+
+        int skipLiteral(int pos, String literal) throws ParseException {
+            if( !matches( data, pos, literal ) ) {
+                throw unexpected( pos );
+            }
+            return pos + literal.length();
+        }
+
+        int skipNumber(int pos) throws ParseException {
+            if( pos < limit && data.get( pos ) == '-' ) {
+                pos++;
+            }
+            int digits = skipDigits( pos );
+            if( digits == pos ) {
+                throw unexpected( pos );
+            }
+            pos = digits;
+            if( pos < limit && data.get( pos ) == '.' ) {
+                digits = skipDigits( pos + 1 );
+                if( digits == pos + 1 ) {
+                    throw unexpected( digits );
+                }
+                pos = digits;
+            }
+            if( pos < limit && (data.get( pos ) == 'e' || data.get( pos ) == 'E') ) {
+                pos++;
+                if( pos < limit && (data.get( pos ) == '+' || data.get( pos ) == '-') ) {
+                    pos++;
+                }
+                digits = skipDigits( pos );
+                if( digits == pos ) {
+                    throw unexpected( pos );
+                }
+                pos = digits;
+            }
+            return pos;
+        }
+
+        int skipDigits(int pos) {
+            while( pos < limit ) {
+                byte b = data.get( pos );
+                if( b < '0' || b > '9' ) {
+                    break;
+                }
+                pos++;
+            }
+            return pos;
+        }
+
+        /**
+         * Read a previously validated value.
+         * Objects and arrays are returned as lazy values; all other values are read immediately.
+         * @param start The position of the start of the value.
+         * @param end   The position immediately following the end of the value.
+         */
+        Object readValue(int start, int end) {
+            switch( data.get( start ) ) {
+            case '{':
+                return new LazyObject( this, start );
+            case '[':
+                return new LazyArray( this, start );
+            case '"':
+                String value = readString( start + 1, end - 1 );
+                return interner != null ? interner.internValue( value ) : value;
+            case 't':
+                return Boolean.TRUE;
+            case 'f':
+                return Boolean.FALSE;
+            case 'n':
+                return null;
+            default:
+                return readNumber( start, end );
+            }
+        }
+
+        /** Read the entries of a previously validated object. */
+        Map<String,Object> readObject(int pos) {
+            Map<String,Object> entries = new HashMap<>();
+            pos = skipWhitespace( pos + 1 );
+            if( data.get( pos ) == '}' ) {
+                return entries;
+            }
+            try {
+                while( true ) {
+                    int keyEnd = skipString( pos );
+                    String key = readString( pos + 1, keyEnd - 1 );
+                    if( interner != null ) {
+                        key = interner.intern( key );
+                    }
+                    int valueStart = skipWhitespace( skipWhitespace( keyEnd ) + 1 );
+                    int valueEnd = skipValue( valueStart );
+                    entries.put( key, readValue( valueStart, valueEnd ) );
+                    pos = skipWhitespace( valueEnd );
+                    if( data.get( pos ) != ',' ) {
+                        break;
+                    }
+                    pos = skipWhitespace( pos + 1 );
+                }
+            }
+            catch(ParseException e) {
+                // Won't/can't happen - the document has already been validated.
+                throw new IllegalStateException( e );
+            }
+            return entries;
+        }
+
+        /** Read the items of a previously validated array. */
+        List<Object> readArray(int pos) {
+            List<Object> items = new ArrayList<>();
+            pos = skipWhitespace( pos + 1 );
+            if( data.get( pos ) == ']' ) {
+                return items;
+            }
+            try {
+                while( true ) {
+                    int valueEnd = skipValue( pos );
+                    items.add( readValue( pos, valueEnd ) );
+                    pos = skipWhitespace( valueEnd );
+                    if( data.get( pos ) != ',' ) {
+                        break;
+                    }
+                    pos = skipWhitespace( pos + 1 );
+                }
+            }
+            catch(ParseException e) {
+                // Won't/can't happen - the document has already been validated.
+                throw new IllegalStateException( e );
+            }
+            return items;
+        }
+
+        /**
+         * Read a previously validated string.
+         * Decodes UTF-8 and escape sequences.
+         * @param start The position of the first character of the string.
+         * @param end   The position of the string's closing quote.
+         */
+        String readString(int start, int end) {
+            char[] chars = new char[end - start];
+            int length = 0;
+            int pos = start;
+            while( pos < end ) {
+                int b = data.get( pos++ ) & 0xFF;
+                if( b == '\\' ) {
+                    char ch = (char)data.get( pos++ );
+                    switch( ch ) {
+                    case 'b': ch = '\b'; break;
+                    case 'f': ch = '\f'; break;
+                    case 'n': ch = '\n'; break;
+                    case 'r': ch = '\r'; break;
+                    case 't': ch = '\t'; break;
+                    case 'u':
+                        ch = (char)((Character.digit( data.get( pos ), 16 ) << 12)
+                                  | (Character.digit( data.get( pos + 1 ), 16 ) << 8)
+                                  | (Character.digit( data.get( pos + 2 ), 16 ) << 4)
+                                  | Character.digit( data.get( pos + 3 ), 16 ));
+                        pos += 4;
+                        break;
+                    default: // " \ or /
+                    }
+                    chars[length++] = ch;
+                }
+                else if( b < 0x80 ) {
+                    chars[length++] = (char)b;
+                }
+                else if( b < 0xE0 && pos < end ) {
+                    chars[length++] = (char)(((b & 0x1F) << 6) | (data.get( pos++ ) & 0x3F));
+                }
+                else if( b < 0xF0 && pos + 1 < end ) {
+                    chars[length++] = (char)(((b & 0x0F) << 12) | ((data.get( pos ) & 0x3F) << 6) | (data.get( pos + 1 ) & 0x3F));
+                    pos += 2;
+                }
+                else if( pos + 2 < end ) {
+                    int codePoint = ((b & 0x07) << 18) | ((data.get( pos ) & 0x3F) << 12) | ((data.get( pos + 1 ) & 0x3F) << 6) | (data.get( pos + 2 ) & 0x3F);
+                    pos += 3;
+                    // Note that a four byte sequence decodes to no more than two chars.
+                    length += Character.toChars( codePoint, chars, length );
+                }
+                else {
+                    chars[length++] = '\uFFFD'; // Truncated sequence.
+                    pos = end;
+                }
+            }
+            return new String( chars, 0, length );
+        }
+
+        /**
+         * Read a previously validated number.
+         * As per json-simple, integer values are returned as Longs and all other values as Doubles.
+         */
+        Number readNumber(int start, int end) {
+            boolean integer = true;
+            char[] chars = new char[end - start];
+            for( int i = 0; i < chars.length; i++ ) {
+                char ch = (char)data.get( start + i );
+                if( ch == '.' || ch == 'e' || ch == 'E' ) {
+                    integer = false;
+                }
+                chars[i] = ch;
+            }
+            String number = new String( chars );
+            if( integer ) {
+                try {
+                    return Long.valueOf( number );
+                }
+                catch(NumberFormatException e) {
+                    // Out of range; fall through to double.
+                }
+            }
+            return Double.valueOf( number );
+        }
+    }
+
+    /**
+     * A lazily read, read-only JSON object.
+     * The object's entries are read from the document when first accessed. The object's hash
+     * code is calculated once and then cached; as nested objects and arrays also cache their
+     * hash codes, each value in a document is only hashed once.
+     */
+    static final class LazyObject extends AbstractMap<String,Object> {
+
+        /** The document scanner; null once the object's entries have been read. */
+        private Scanner scanner;
+        /** The position of the object in the document. */
+        private final int start;
+        /** The object's entries. */
+        private volatile Map<String,Object> entries;
+        /** The object's hash code; zero if not yet calculated. */
+        private int hashCode;
+
+        LazyObject(Scanner scanner, int start) {
+            this.scanner = scanner;
+            this.start = start;
+        }
+
+        /** Create an object with previously read entries. */
+        LazyObject(Map<String,Object> entries) {
+            this.start = -1;
+            this.entries = Collections.unmodifiableMap( entries );
+        }
+
+        private Map<String,Object> entries() {
+            Map<String,Object> result = entries;
+            if( result == null ) {
+                synchronized( this ) {
+                    result = entries;
+                    if( result == null ) {
+                        result = entries = Collections.unmodifiableMap( scanner.readObject( start ) );
+                        scanner = null;
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public int size() {
+            return entries().size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return entries().isEmpty();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return entries().containsKey( key );
+        }
+
+        @Override
+        public Object get(Object key) {
+            return entries().get( key );
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return entries().keySet();
+        }
+
+        @Override
+        public Collection<Object> values() {
+            return entries().values();
+        }
+
+        @Override
+        public Set<Entry<String,Object>> entrySet() {
+            return entries().entrySet();
+        }
+
+        @Override
+        public int hashCode() {
+            // Note that concurrent calculations of the hash code are harmless.
+            int h = hashCode;
+            if( h == 0 ) {
+                h = hashCode = entries().hashCode();
+            }
+            return h;
+        }
+
+        @Override
+        public String toString() {
+            return JSONValue.toJSONString( this );
+        }
+    }
+
+    /**
+     * A lazily read, read-only JSON array.
+     * The array's items are read from the document when first accessed. The array's hash code is
+     * calculated once and then cached.
+     */
+    static final class LazyArray extends AbstractList<Object> implements RandomAccess {
+
+        /** The document scanner; null once the array's items have been read. */
+        private Scanner scanner;
+        /** The position of the array in the document. */
+        private final int start;
+        /** The array's items. */
+        private volatile List<Object> items;
+        /** The array's hash code; zero if not yet calculated. */
+        private int hashCode;
+
+        LazyArray(Scanner scanner, int start) {
+            this.scanner = scanner;
+            this.start = start;
+        }
+
+        /** Create an array with previously read items. */
+        LazyArray(List<Object> items) {
+            this.start = -1;
+            this.items = Collections.unmodifiableList( items );
+        }
+
+        private List<Object> items() {
+            List<Object> result = items;
+            if( result == null ) {
+                synchronized( this ) {
+                    result = items;
+                    if( result == null ) {
+                        result = items = Collections.unmodifiableList( scanner.readArray( start ) );
+                        scanner = null;
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public int size() {
+            return items().size();
+        }
+
+        @Override
+        public Object get(int index) {
+            return items().get( index );
+        }
+
+        @Override
+        public int hashCode() {
+            // Note that concurrent calculations of the hash code are harmless.
+            int h = hashCode;
+            if( h == 0 ) {
+                h = hashCode = items().hashCode();
+            }
+            return h;
+        }
+
+        @Override
+        public String toString() {
+            return JSONValue.toJSONString( this );
+        }
+    }
+}
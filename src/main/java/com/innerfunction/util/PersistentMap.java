@@ -0,0 +1,542 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable map with structural sharing.
+ * The map is implemented as a hash array mapped trie (HAMT). Modified versions of a map are
+ * created using the plus and minus methods; these return a new map which shares all unmodified
+ * parts of the trie with the original map, so a modification costs O(log32 n) time and space,
+ * instead of the O(n) needed to copy a HashMap. Because instances are never modified, they can be
+ * safely shared between any number of owners and threads.
+ * The standard Map mutation methods (put, remove etc.) aren't supported.
+ * A map's hash code is calculated once and then cached. Maps derived from a map with a cached
+ * hash code calculate their own hash code incrementally, from the hash codes of the entries
+ * which were added or removed; and maps with different hash codes are compared in constant time.
+ * (Note that this assumes that map values aren't modified after being added to the map).
+ */
+public final class PersistentMap<K,V> extends AbstractMap<K,V> {
+
+    /** The number of hash bits used at each level of the trie. */
+    static final int BitsPerLevel = 5;
+    /** The maximum depth of the trie, including a collision node at the lowest level. */
+    static final int MaxDepth = 8;
+
+    /** The empty map. */
+    @SuppressWarnings("rawtypes")
+    private static final PersistentMap Empty = new PersistentMap( new BitmapNode( 0, new Object[0] ), 0 );
+
+    /** The root node of the trie. */
+    private final Node root;
+    /** The number of entries in the map. */
+    private final int size;
+    /** The map's entry set view. */
+    private Set<Entry<K,V>> entrySet;
+    /** The map's hash code. Only valid when hashed is true. */
+    private int hashCode;
+    /** A flag indicating whether the map's hash code has been calculated. */
+    private volatile boolean hashed;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    private PersistentMap(Node root, int size, int hashCode) {
+        this.root = root;
+        this.size = size;
+        this.hashCode = hashCode;
+        this.hashed = true;
+    }
+
+    /** Return the empty map. */
+    @SuppressWarnings("unchecked")
+    public static <K,V> PersistentMap<K,V> empty() {
+        return (PersistentMap<K,V>)Empty;
+    }
+
+    /**
+     * Return a persistent map with the same entries as another map.
+     * If the argument is already a persistent map then it is returned unchanged; otherwise its
+     * entries are copied to a new persistent map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K,V> PersistentMap<K,V> from(Map<? extends K,? extends V> map) {
+        if( map instanceof PersistentMap ) {
+            return (PersistentMap<K,V>)map;
+        }
+        return PersistentMap.<K,V>empty().plusAll( map );
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return root.find( 0, hash( key ), key ) != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Leaf leaf = root.find( 0, hash( key ), key );
+        return leaf != null ? (V)leaf.value : null;
+    }
+
+    /**
+     * Return a new map with an additional entry.
+     * If the map already contains the key then the new map's entry replaces the existing entry.
+     */
+    public PersistentMap<K,V> plus(K key, V value) {
+        int hash = hash( key );
+        // If this map's hash code is known then find the entry being replaced, so that the new
+        // map's hash code can be calculated incrementally.
+        Leaf replaced = hashed ? root.find( 0, hash, key ) : null;
+        boolean[] added = new boolean[1];
+        Node newRoot = root.assoc( 0, hash, key, value, added );
+        if( newRoot == root ) {
+            return this;
+        }
+        int newSize = added[0] ? size + 1 : size;
+        if( hashed ) {
+            int newHashCode = hashCode + entryHashCode( key, value );
+            if( replaced != null ) {
+                newHashCode -= replaced.hashCode();
+            }
+            return new PersistentMap<>( newRoot, newSize, newHashCode );
+        }
+        return new PersistentMap<>( newRoot, newSize );
+    }
+
+    /**
+     * Return a new map with all the entries of another map added.
+     * Entries in the argument replace any entries in this map with the same key.
+     */
+    @SuppressWarnings("unchecked")
+    public PersistentMap<K,V> plusAll(Map<? extends K,? extends V> map) {
+        if( map.isEmpty() ) {
+            return this;
+        }
+        if( size == 0 && map instanceof PersistentMap ) {
+            // Adding to an empty map, so just share the argument.
+            return (PersistentMap<K,V>)map;
+        }
+        PersistentMap<K,V> result = this;
+        for( Entry<? extends K,? extends V> entry : map.entrySet() ) {
+            result = result.plus( entry.getKey(), entry.getValue() );
+        }
+        return result;
+    }
+
+    /** Return a new map with an entry removed. */
+    public PersistentMap<K,V> minus(Object key) {
+        int hash = hash( key );
+        Leaf removed = root.find( 0, hash, key );
+        if( removed == null ) {
+            return this;
+        }
+        Node newRoot = root.without( 0, hash, key );
+        if( newRoot == null ) {
+            return empty();
+        }
+        if( hashed ) {
+            return new PersistentMap<>( newRoot, size - 1, hashCode - removed.hashCode() );
+        }
+        return new PersistentMap<>( newRoot, size - 1 );
+    }
+
+    /** Return a new map with a number of entries removed. */
+    public PersistentMap<K,V> minusAll(Collection<?> keys) {
+        PersistentMap<K,V> result = this;
+        for( Object key : keys ) {
+            result = result.minus( key );
+        }
+        return result;
+    }
+
+    @Override
+    public Set<Entry<K,V>> entrySet() {
+        if( entrySet == null ) {
+            entrySet = new AbstractSet<Entry<K,V>>() {
+                @Override
+                public Iterator<Entry<K,V>> iterator() {
+                    return new EntryIterator<>( root );
+                }
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    @Override
+    public int hashCode() {
+        if( !hashed ) {
+            hashCode = super.hashCode();
+            hashed = true;
+        }
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if( obj == this ) {
+            return true;
+        }
+        if( obj instanceof PersistentMap ) {
+            PersistentMap other = (PersistentMap)obj;
+            if( size != other.size || hashCode() != other.hashCode() ) {
+                return false;
+            }
+        }
+        return super.equals( obj );
+    }
+
+    /** Calculate the hash code of a map entry, as defined by Map.Entry.hashCode(). */
+    static int entryHashCode(Object key, Object value) {
+        return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+    }
+
+    /** Calculate a key's hash, spreading the higher bits of the hash code downwards. */
+    static int hash(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /** Compare two keys for equality. */
+    static boolean eq(Object k0, Object k1) {
+        return k0 == k1 || (k0 != null && k0.equals( k1 ));
+    }
+
+    /** A map entry; the leaves of the trie. */
+    static final class Leaf implements Entry {
+        final int hash;
+        final Object key;
+        final Object value;
+
+        Leaf(int hash, Object key, Object value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+        @Override
+        public Object getKey() {
+            return key;
+        }
+        @Override
+        public Object getValue() {
+            return value;
+        }
+        @Override
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException();
+        }
+        @Override
+        public boolean equals(Object obj) {
+            if( !(obj instanceof Entry) ) {
+                return false;
+            }
+            Entry entry = (Entry)obj;
+            return eq( key, entry.getKey() ) && eq( value, entry.getValue() );
+        }
+        @Override
+        public int hashCode() {
+            return entryHashCode( key, value );
+        }
+        @Override
+        public String toString() {
+            return key+"="+value;
+        }
+    }
+
+    /**
+     * A trie node.
+     * A node's children are either leaves or other nodes.
+     */
+    static abstract class Node {
+        /** The node's children. */
+        final Object[] children;
+
+        Node(Object[] children) {
+            this.children = children;
+        }
+        /** Find the leaf for a key. Returns null if the key isn't found. */
+        abstract Leaf find(int shift, int hash, Object key);
+        /**
+         * Return a node with an entry added.
+         * Returns this node if the node already contains the entry.
+         * @param added A flag set to true if a new entry is added (as opposed to an existing
+         *              entry being replaced).
+         */
+        abstract Node assoc(int shift, int hash, Object key, Object value, boolean[] added);
+        /**
+         * Return a node with an entry removed.
+         * Returns null if the resulting node is empty.
+         */
+        abstract Node without(int shift, int hash, Object key);
+    }
+
+    /**
+     * A bitmap indexed node.
+     * Each bit in the bitmap corresponds to one of the 32 possible values of the hash bits at
+     * the node's level of the trie. Only children for set bits are stored.
+     */
+    static final class BitmapNode extends Node {
+        final int bitmap;
+
+        BitmapNode(int bitmap, Object[] children) {
+            super( children );
+            this.bitmap = bitmap;
+        }
+        @Override
+        Leaf find(int shift, int hash, Object key) {
+            int bit = bit( hash, shift );
+            if( (bitmap & bit) == 0 ) {
+                return null;
+            }
+            Object child = children[index( bit )];
+            if( child instanceof Leaf ) {
+                Leaf leaf = (Leaf)child;
+                return eq( key, leaf.key ) ? leaf : null;
+            }
+            return ((Node)child).find( shift + BitsPerLevel, hash, key );
+        }
+        @Override
+        Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = bit( hash, shift );
+            int idx = index( bit );
+            if( (bitmap & bit) == 0 ) {
+                // Insert a new leaf.
+                Object[] newChildren = new Object[children.length + 1];
+                System.arraycopy( children, 0, newChildren, 0, idx );
+                newChildren[idx] = new Leaf( hash, key, value );
+                System.arraycopy( children, idx, newChildren, idx + 1, children.length - idx );
+                added[0] = true;
+                return new BitmapNode( bitmap | bit, newChildren );
+            }
+            Object child = children[idx];
+            Object newChild;
+            if( child instanceof Leaf ) {
+                Leaf leaf = (Leaf)child;
+                if( eq( key, leaf.key ) ) {
+                    if( leaf.value == value ) {
+                        return this;
+                    }
+                    newChild = new Leaf( hash, key, value );
+                }
+                else {
+                    // Replace the leaf with a sub-node containing both entries.
+                    newChild = makeNode( shift + BitsPerLevel, leaf, new Leaf( hash, key, value ) );
+                    added[0] = true;
+                }
+            }
+            else {
+                newChild = ((Node)child).assoc( shift + BitsPerLevel, hash, key, value, added );
+                if( newChild == child ) {
+                    return this;
+                }
+            }
+            Object[] newChildren = children.clone();
+            newChildren[idx] = newChild;
+            return new BitmapNode( bitmap, newChildren );
+        }
+        @Override
+        Node without(int shift, int hash, Object key) {
+            int bit = bit( hash, shift );
+            if( (bitmap & bit) == 0 ) {
+                return this;
+            }
+            int idx = index( bit );
+            Object child = children[idx];
+            Object newChild;
+            if( child instanceof Leaf ) {
+                if( !eq( key, ((Leaf)child).key ) ) {
+                    return this;
+                }
+                newChild = null;
+            }
+            else {
+                newChild = ((Node)child).without( shift + BitsPerLevel, hash, key );
+                if( newChild == child ) {
+                    return this;
+                }
+            }
+            if( newChild != null ) {
+                Object[] newChildren = children.clone();
+                newChildren[idx] = newChild;
+                return new BitmapNode( bitmap, newChildren );
+            }
+            // Remove the child.
+            if( children.length == 1 ) {
+                return null;
+            }
+            Object[] newChildren = new Object[children.length - 1];
+            System.arraycopy( children, 0, newChildren, 0, idx );
+            System.arraycopy( children, idx + 1, newChildren, idx, children.length - idx - 1 );
+            return new BitmapNode( bitmap & ~bit, newChildren );
+        }
+        /** Get the bitmap bit for a hash at a level of the trie. */
+        static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & 0x1f);
+        }
+        /** Get the index of the child for a bitmap bit. */
+        int index(int bit) {
+            return Integer.bitCount( bitmap & (bit - 1) );
+        }
+        /** Make a node containing two leaves. */
+        static Node makeNode(int shift, Leaf leaf0, Leaf leaf1) {
+            if( leaf0.hash == leaf1.hash ) {
+                return new CollisionNode( leaf0.hash, new Object[]{ leaf0, leaf1 } );
+            }
+            int bit0 = bit( leaf0.hash, shift );
+            int bit1 = bit( leaf1.hash, shift );
+            if( bit0 == bit1 ) {
+                // Hashes are the same at this level, so push both leaves down a level.
+                return new BitmapNode( bit0, new Object[]{ makeNode( shift + BitsPerLevel, leaf0, leaf1 ) } );
+            }
+            // Order the leaves by bit position (note that bit 31 is negative, so can't compare values).
+            boolean leaf0First = (bit1 & (bit0 - 1)) == 0;
+            Object[] children = leaf0First ? new Object[]{ leaf0, leaf1 } : new Object[]{ leaf1, leaf0 };
+            return new BitmapNode( bit0 | bit1, children );
+        }
+    }
+
+    /** A node containing leaves whose keys have the same hash. */
+    static final class CollisionNode extends Node {
+        final int hash;
+
+        CollisionNode(int hash, Object[] leaves) {
+            super( leaves );
+            this.hash = hash;
+        }
+        @Override
+        Leaf find(int shift, int hash, Object key) {
+            if( hash == this.hash ) {
+                for( Object child : children ) {
+                    Leaf leaf = (Leaf)child;
+                    if( eq( key, leaf.key ) ) {
+                        return leaf;
+                    }
+                }
+            }
+            return null;
+        }
+        @Override
+        Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+            if( hash != this.hash ) {
+                // Nest this node within a bitmap node, and then add the new entry to that.
+                Node node = new BitmapNode( BitmapNode.bit( this.hash, shift ), new Object[]{ this } );
+                return node.assoc( shift, hash, key, value, added );
+            }
+            for( int i = 0; i < children.length; i++ ) {
+                Leaf leaf = (Leaf)children[i];
+                if( eq( key, leaf.key ) ) {
+                    if( leaf.value == value ) {
+                        return this;
+                    }
+                    Object[] newChildren = children.clone();
+                    newChildren[i] = new Leaf( hash, key, value );
+                    return new CollisionNode( hash, newChildren );
+                }
+            }
+            Object[] newChildren = new Object[children.length + 1];
+            System.arraycopy( children, 0, newChildren, 0, children.length );
+            newChildren[children.length] = new Leaf( hash, key, value );
+            added[0] = true;
+            return new CollisionNode( hash, newChildren );
+        }
+        @Override
+        Node without(int shift, int hash, Object key) {
+            for( int i = 0; i < children.length; i++ ) {
+                if( eq( key, ((Leaf)children[i]).key ) ) {
+                    if( children.length == 1 ) {
+                        return null;
+                    }
+                    Object[] newChildren = new Object[children.length - 1];
+                    System.arraycopy( children, 0, newChildren, 0, i );
+                    System.arraycopy( children, i + 1, newChildren, i, children.length - i - 1 );
+                    return new CollisionNode( hash, newChildren );
+                }
+            }
+            return this;
+        }
+    }
+
+    /** A depth first iterator over the leaves of a trie. */
+    static final class EntryIterator<K,V> implements Iterator<Entry<K,V>> {
+        /** A stack of the child arrays of the nodes being iterated. */
+        private final Object[][] nodes = new Object[MaxDepth][];
+        /** The current position within each child array. */
+        private final int[] positions = new int[MaxDepth];
+        /** The current depth in the stack. */
+        private int depth = 0;
+        /** The next leaf to return. */
+        private Leaf next;
+
+        EntryIterator(Node root) {
+            nodes[0] = root.children;
+            advance();
+        }
+        /** Find the next leaf. */
+        private void advance() {
+            next = null;
+            while( depth >= 0 ) {
+                Object[] children = nodes[depth];
+                if( positions[depth] < children.length ) {
+                    Object child = children[positions[depth]++];
+                    if( child instanceof Leaf ) {
+                        next = (Leaf)child;
+                        return;
+                    }
+                    depth++;
+                    nodes[depth] = ((Node)child).children;
+                    positions[depth] = 0;
+                }
+                else {
+                    depth--;
+                }
+            }
+        }
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+        @Override
+        @SuppressWarnings("unchecked")
+        public Entry<K,V> next() {
+            if( next == null ) {
+                throw new NoSuchElementException();
+            }
+            Leaf result = next;
+            advance();
+            return (Entry<K,V>)result;
+        }
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
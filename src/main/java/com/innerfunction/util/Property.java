@@ -14,7 +14,6 @@
 package com.innerfunction.util;
 
 import android.util.Log;
-import android.util.LruCache;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -24,6 +23,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a configurable property member of a class.
@@ -47,6 +47,13 @@ public class Property {
     private Method setter;
     /** The property's getter method. Can be null. */
     private Method getter;
+    /** The generic type arguments of the property type; resolved when first needed. */
+    private volatile Type[] genericParameterTypeInfo;
+    /**
+     * The boxed number type accepted by the setter; e.g. Integer for both int and Integer
+     * properties. Null for properties which don't accept a specific number type.
+     */
+    private Class<?> numberType;
 
     /**
      * Create a new property.
@@ -71,6 +78,7 @@ public class Property {
         sb.append( baseName );
         this.setter = setters.get( sb.toString() );
         this.type = setter.getParameterTypes()[0];
+        this.numberType = getBoxedNumberType( type );
         // Try to find a getter.
         sb.replace( 0, 1, "g"); // e.g. [s]etXxx -> [g]etXxx
         getter = getters.get( sb.toString() );
@@ -90,6 +98,9 @@ public class Property {
         // e.g. BackgroundColor -> backgroundColor
         sb.replace( 0, 1, baseName.substring( 0, 1 ).toLowerCase() );
         this.name = sb.toString();
+        // Bind the accessor methods so that access checks aren't repeated on each invocation.
+        makeAccessible( setter );
+        makeAccessible( getter );
         /*
         this.name = baseName.substring( 0, 1 ).toLowerCase()+baseName.substring( 1 );
         this.setter = methods.get("set"+baseName );
@@ -119,19 +130,30 @@ public class Property {
      * Returns An empty array if no generic parameter type info is available.
      */
     public Type[] getGenericParameterTypeInfo() {
-        Type genericArgType = setter.getGenericParameterTypes()[0];
-        if( genericArgType instanceof ParameterizedType ) {
-            return ((ParameterizedType)genericArgType).getActualTypeArguments();
+        Type[] result = genericParameterTypeInfo;
+        if( result == null ) {
+            Type genericArgType = setter.getGenericParameterTypes()[0];
+            if( genericArgType instanceof ParameterizedType ) {
+                result = ((ParameterizedType)genericArgType).getActualTypeArguments();
+            }
+            else {
+                result = new Type[0];
+            }
+            genericParameterTypeInfo = result;
         }
-        return new Type[0];
+        return result;
     }
 
     /**
      * Set the property on an object with the specified value.
+     * Number values are converted to the property's number type, if necessary.
      * Returns true if the value was set.
      */
     public boolean set(Object object, Object value) {
         try {
+            if( numberType != null && value instanceof Number && value.getClass() != numberType ) {
+                value = convertNumber( (Number)value, numberType );
+            }
             setter.invoke( object, value );
             return true;
         }
@@ -160,13 +182,75 @@ public class Property {
     }
 
     /**
-     * A cache of object properties by class name.
-     * Used to cache the results of getPropertiesForObject(..). The Class.getMethods() call can be
-     * CPU intensive; however, it is not desirable to cache all results for all classes as this
-     * could swap CPU overhead for memory overhead. Instead, an LRU cache with a smallish size (of
-     * 50 items) is kept.
+     * Disable access checks on an accessor method.
+     * Avoids the cost of an access check on every invocation, and allows public methods declared
+     * on non-public classes to be invoked.
      */
-    static final LruCache<Class,Map<String,Property>> ObjectPropertiesByClass = new LruCache<>( 50 );
+    private static void makeAccessible(Method method) {
+        if( method != null ) {
+            try {
+                method.setAccessible( true );
+            }
+            catch(SecurityException e) {
+                // Method will be invoked with access checks.
+            }
+        }
+    }
+
+    /**
+     * Get the boxed number type for a property type.
+     * Returns null if the type isn't a primitive number type or a boxed number type.
+     */
+    private static Class<?> getBoxedNumberType(Class<?> type) {
+        if( type == int.class || type == Integer.class ) {
+            return Integer.class;
+        }
+        if( type == float.class || type == Float.class ) {
+            return Float.class;
+        }
+        if( type == double.class || type == Double.class ) {
+            return Double.class;
+        }
+        if( type == long.class || type == Long.class ) {
+            return Long.class;
+        }
+        if( type == short.class || type == Short.class ) {
+            return Short.class;
+        }
+        if( type == byte.class || type == Byte.class ) {
+            return Byte.class;
+        }
+        return null;
+    }
+
+    /** Convert a number to the specified boxed number type. */
+    private static Number convertNumber(Number number, Class<?> numberType) {
+        if( numberType == Integer.class ) {
+            return number.intValue();
+        }
+        if( numberType == Float.class ) {
+            return number.floatValue();
+        }
+        if( numberType == Double.class ) {
+            return number.doubleValue();
+        }
+        if( numberType == Long.class ) {
+            return number.longValue();
+        }
+        if( numberType == Short.class ) {
+            return number.shortValue();
+        }
+        return number.byteValue();
+    }
+
+    /**
+     * A cache of object properties by class.
+     * Used to cache the results of getPropertiesForClass(..). The Class.getDeclaredMethods() call
+     * can be CPU intensive, so the result for each class is computed once and then kept for the
+     * lifetime of the app. The number of classes configured by an app is bounded, so the cache
+     * is unbounded; it is read without locking.
+     */
+    static final Map<Class,Map<String,Property>> ObjectPropertiesByClass = new ConcurrentHashMap<>();
 
     /**
      * Get the configurable properties for an object.
@@ -175,7 +259,16 @@ public class Property {
      * @return A map of object properties.
      */
     public static Map<String,Property> getPropertiesForObject(Object object) {
-        Class<?> objClass = object.getClass();
+        return getPropertiesForClass( object.getClass() );
+    }
+
+    /**
+     * Get the configurable properties for a class.
+     * Returns a map of Property instances keyed by property name.
+     * @param objClass  The class whose properties are needed.
+     * @return A map of class properties.
+     */
+    public static Map<String,Property> getPropertiesForClass(Class<?> objClass) {
         // Check for a cached result.
         Map<String,Property> properties = ObjectPropertiesByClass.get( objClass );
         if( properties == null ) {
@@ -244,9 +337,7 @@ public class Property {
                 properties.put( property.name, property );
             }
             // Add result to cache.
-            synchronized( ObjectPropertiesByClass ) {
-                ObjectPropertiesByClass.put( objClass, properties );
-            }
+            ObjectPropertiesByClass.put( objClass, properties );
         }
         return properties;
     }
@@ -0,0 +1,138 @@
+// Copyright 2016 InnerFunction Ltd.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+package com.innerfunction.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A table of canonical string instances.
+ * Used when parsing configuration data to ensure that equal strings - e.g. the same property
+ * name appearing in many different objects - are represented by a single string instance, so
+ * that duplicate strings don't each retain their own copy of the same characters. Keys are
+ * always interned; values are only interned if they are short, as long values (e.g. text
+ * content) are rarely duplicated.
+ *
+ * The table is bounded: once it holds its maximum number of strings it is cleared, and starts
+ * again with the strings seen after that point. This keeps the table's size in step with the
+ * data currently being parsed, as the table is shared by everything parsed through a URI handler
+ * for the life of the app. Clearing the table only affects sharing; strings previously returned
+ * remain valid.
+ *
+ * The table is thread safe, and keeps track of the number of duplicate strings it has replaced,
+ * and of an estimate of the heap those duplicates would otherwise have retained.
+ */
+public final class StringInterner {
+
+    /** The maximum length of a value string which is interned. */
+    public static final int MaxValueLength = 64;
+    /** The default maximum number of strings held by the table. */
+    public static final int DefaultMaxSize = 10000;
+    /**
+     * The estimated fixed heap size of a string instance, in bytes.
+     * Includes the object header and fields of the string and of its character array.
+     */
+    static final int EstimatedStringOverhead = 40;
+
+    /** The canonical strings. */
+    private final ConcurrentHashMap<String,String> strings = new ConcurrentHashMap<>();
+    /** The maximum number of strings held by the table. */
+    private final int maxSize;
+    /**
+     * The number of strings in the table.
+     * Tracked separately as ConcurrentHashMap.size() can be expensive. Note that the count may
+     * briefly drift from the actual size when the table is cleared concurrently with an insert.
+     */
+    private final AtomicInteger size = new AtomicInteger( 0 );
+    /** The number of duplicate strings replaced by a canonical instance. */
+    private final AtomicInteger duplicateCount = new AtomicInteger( 0 );
+    /** The estimated heap retained by the replaced duplicates. */
+    private final AtomicLong savedBytes = new AtomicLong( 0 );
+
+    public StringInterner() {
+        this( DefaultMaxSize );
+    }
+
+    /**
+     * Create a new table.
+     * @param maxSize   The maximum number of strings held by the table.
+     */
+    public StringInterner(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Return the canonical instance of a string.
+     * @param string    A string; may be null.
+     * @return The canonical instance of the string; or the string itself if it is the first
+     * instance of its value seen by the table.
+     */
+    public String intern(String string) {
+        if( string == null ) {
+            return null;
+        }
+        String canonical = strings.get( string );
+        if( canonical == null ) {
+            if( size.get() >= maxSize ) {
+                strings.clear();
+                size.set( 0 );
+            }
+            canonical = strings.putIfAbsent( string, string );
+            if( canonical == null ) {
+                size.incrementAndGet();
+                return string;
+            }
+        }
+        if( canonical != string ) {
+            duplicateCount.incrementAndGet();
+            savedBytes.addAndGet( EstimatedStringOverhead + 2 * string.length() );
+        }
+        return canonical;
+    }
+
+    /**
+     * Return the canonical instance of a value string.
+     * Only strings no longer than MaxValueLength are interned.
+     */
+    public String internValue(String string) {
+        if( string != null && string.length() <= MaxValueLength ) {
+            return intern( string );
+        }
+        return string;
+    }
+
+    /** Get the number of canonical strings in the table. */
+    public int size() {
+        return size.get();
+    }
+
+    /** Get the number of duplicate strings which have been replaced by a canonical instance. */
+    public int getDuplicateCount() {
+        return duplicateCount.get();
+    }
+
+    /**
+     * Get an estimate of the heap saved by interning, in bytes.
+     * This is the heap which would otherwise have been retained by the replaced duplicates.
+     */
+    public long getSavedBytes() {
+        return savedBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StringInterner(size=%d, duplicates=%d, saved=%d bytes)", size(), getDuplicateCount(), getSavedBytes() );
+    }
+}
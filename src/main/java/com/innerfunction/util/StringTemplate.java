@@ -14,6 +14,7 @@
 package com.innerfunction.util;
 
 import android.net.Uri;
+import android.util.LruCache;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -26,76 +27,110 @@ import java.util.List;
  * escaped by nesting within additional braces, so e.g. kv{{variable}}kv evaluates to
  * the output kv{variable}kv. A % symbol at the start of a placeholder (e.g. kv{%name}kv)
  * indicates that the variable value should be URI escaped.
+ * Templates are parsed in a single pass when created, and are immutable and thread safe once
+ * created. The static templateWithString and render methods use a cache of recently parsed
+ * templates.
  */
 public class StringTemplate {
 
+    /** The maximum number of parsed templates cached by the templateWithString() method. */
+    static final int CacheSize = 200;
+
+    /** A cache of previously parsed templates, keyed by template string. */
+    static final LruCache<String,StringTemplate> Templates = new LruCache<>( CacheSize );
+
     static abstract class Block {
-        abstract String eval(Object context, boolean uriEncode);
+        abstract void render(Object context, boolean uriEncode, StringBuilder out);
     }
 
-    /** Regex pattern for matching var references within a template string. */
-    static final private Regex Placeholders = new Regex("^([^{]*)([{]+)(%?[-a-zA-Z0-9_$.]+)([}]+)(.*)$");
     /** An array of parsed template blocks. */
-    private List<Block> blocks = new ArrayList<>();
+    private final List<Block> blocks = new ArrayList<>();
 
     public StringTemplate(String template) {
-        while( template.length() > 0 ) {
-            String[] matches = Placeholders.matches( template );
-            if( matches != null ) {
-
-                String leading   = matches[1];
-                String lbraces   = matches[2];
-                String reference = matches[3];
-                String rbraces   = matches[4];
-                String trailing  = matches[5];
-
+        // Text waiting to be added to the template as a text block.
+        StringBuilder text = new StringBuilder();
+        int length = template.length();
+        int pos = 0;
+        while( pos < length ) {
+            // Find the next placeholder; this is a run of opening braces, followed by a variable
+            // reference, followed by a run of closing braces.
+            int lbraces = template.indexOf('{', pos );
+            if( lbraces < 0 ) {
+                // No more placeholders, append what's left as text.
+                text.append( template, pos, length );
+                break;
+            }
+            int reference = lbraces;
+            while( reference < length && template.charAt( reference ) == '{' ) {
+                reference++;
+            }
+            // A % at the start of the variable reference means that the value result should
+            // be URI encoded.
+            boolean uriEncode = reference < length && template.charAt( reference ) == '%';
+            int name = uriEncode ? reference + 1 : reference;
+            int rbraces = name;
+            while( rbraces < length && isReferenceChar( template.charAt( rbraces ) ) ) {
+                rbraces++;
+            }
+            int end = rbraces;
+            while( end < length && template.charAt( end ) == '}' ) {
+                end++;
+            }
+            if( rbraces > name && end > rbraces ) {
                 // Append leading text to output.
-                this.blocks.add( newTextBlock( leading ) );
+                text.append( template, pos, lbraces );
                 // If just a single opening brace then we have a standard variable placeholder.
-                if( lbraces.length() == 1 && rbraces.length() >= 1 ) {
-                    boolean uriEncode = false;
-                    // A % at the start of the variable reference means that the value result should
-                    // be URI encoded.
-                    if( reference.charAt( 0 ) == '%' ) {
-                        uriEncode = true;
-                        reference = reference.substring( 1 );
-                    }
-                    blocks.add( newRefBlock( reference, uriEncode ) );
-                    // Edge case - more trailing braces than leading braces; just append what's left
-                    // as a text block.
-                    if( rbraces.length() > 1 ) {
-                        blocks.add( newTextBlock( rbraces.substring( 1 ) ) );
-                    }
+                if( reference - lbraces == 1 ) {
+                    addTextBlock( text );
+                    blocks.add( newRefBlock( template.substring( name, rbraces ), uriEncode ) );
+                    // Edge case - more trailing braces than leading braces; just append what's
+                    // left as text.
+                    text.append( template, rbraces + 1, end );
                 }
                 else {
                     // A nested (i.e. escaped) variable placeholder. Strip one each of the opening
-                    // and closing braces and append what's left as a plain text block.
-                    lbraces = lbraces.substring( 1 );
-                    rbraces = rbraces.substring( 1 );
-                    String text = lbraces.concat( reference ).concat( rbraces );
-                    blocks.add( newTextBlock( text ) );
+                    // and closing braces and append what's left as plain text.
+                    text.append( template, lbraces + 1, end - 1 );
                 }
-                template = trailing;
+                pos = end;
             }
             else {
-                int i = template.indexOf('}') + 1;
+                // Not a valid placeholder; append everything up to the next closing brace as text.
+                int i = template.indexOf('}', pos ) + 1;
                 if( i > 0 ) {
-                    this.blocks.add( this.newTextBlock( template.substring( 0, i ) ) );
-                    template = template.substring( i );
+                    text.append( template, pos, i );
+                    pos = i;
                 }
                 else {
-                    this.blocks.add( this.newTextBlock( template ) );
+                    text.append( template, pos, length );
                     break;
                 }
             }
         }
+        addTextBlock( text );
+    }
+
+    /** Test whether a character can be used in a placeholder's variable reference. */
+    private static boolean isReferenceChar(char ch) {
+        return (ch >= 'a' && ch <= 'z')
+            || (ch >= 'A' && ch <= 'Z')
+            || (ch >= '0' && ch <= '9')
+            || ch == '-' || ch == '_' || ch == '$' || ch == '.';
+    }
+
+    /** Add any pending text to the template as a text block. */
+    private void addTextBlock(StringBuilder text) {
+        if( text.length() > 0 ) {
+            blocks.add( newTextBlock( text.toString() ) );
+            text.setLength( 0 );
+        }
     }
 
     private Block newTextBlock(final String text) {
         return new Block() {
             @Override
-            String eval(Object context, boolean uriEncode) {
-                return text;
+            void render(Object context, boolean uriEncode, StringBuilder out) {
+                out.append( text );
             }
             public String toString() {
                 return text;
@@ -104,18 +139,22 @@ public class StringTemplate {
     }
 
     private Block newRefBlock(final String ref, final boolean uriEncodeValue) {
+        final CompiledKeyPath keyPath = CompiledKeyPath.compile( ref );
         return new Block() {
             @Override
-            String eval(Object context, boolean uriEncode) {
-                Object value = KeyPath.resolve( ref, context );
-                String result = "";
+            void render(Object context, boolean uriEncode, StringBuilder out) {
+                Object value = keyPath.resolve( context );
                 if( value != null ) {
-                    result = value.toString();
                     if( uriEncode || uriEncodeValue ) {
-                        result = Uri.encode( result );
+                        out.append( Uri.encode( value.toString() ) );
+                    }
+                    else if( value instanceof CharSequence ) {
+                        out.append( (CharSequence)value );
+                    }
+                    else {
+                        out.append( value );
                     }
                 }
-                return result;
             }
             @Override
             public String toString() {
@@ -130,12 +169,22 @@ public class StringTemplate {
 
     public String render(Object context, boolean uriEncode) {
         StringBuilder sb = new StringBuilder();
-        for( Block b : this.blocks ) {
-            sb.append( b.eval( context, uriEncode ));
-        }
+        render( context, uriEncode, sb );
         return sb.toString();
     }
 
+    /**
+     * Render the template into a string builder.
+     * @param context   The template's data context.
+     * @param uriEncode If true then all variable values are URI encoded.
+     * @param out       A string builder to append the template output to.
+     */
+    public void render(Object context, boolean uriEncode, StringBuilder out) {
+        for( Block b : blocks ) {
+            b.render( context, uriEncode, out );
+        }
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -143,15 +192,24 @@ public class StringTemplate {
         return sb.toString();
     }
 
+    /**
+     * Return a template for a template string.
+     * Returns a cached template if the same template string was used recently.
+     */
     public static StringTemplate templateWithString(String s) {
-        return new StringTemplate( s );
+        StringTemplate template = Templates.get( s );
+        if( template == null ) {
+            template = new StringTemplate( s );
+            Templates.put( s, template );
+        }
+        return template;
     }
 
     public static String render(String s, Object context) {
-        return new StringTemplate( s ).render( context );
+        return templateWithString( s ).render( context );
     }
 
     public static String render(String s, Object context, boolean uriEncode) {
-        return new StringTemplate( s ).render( context, uriEncode );
+        return templateWithString( s ).render( context, uriEncode );
     }
 }
@@ -24,6 +24,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -37,6 +38,11 @@ import android.util.Log;
 
 /**
  * Standard value type conversions.
+ * Conversions to named representations (@see #asRepresentation(Object, String)) are table
+ * driven: each representation name is mapped to an integer representation ID, and the converter
+ * used to convert values of a particular class to a particular representation is resolved the
+ * first time it is needed and then cached. Apps can register additional representations, and
+ * custom converters for specific classes of value (@see #registerConverter).
  * @author juliangoacher
  */
 public class TypeConversions {
@@ -44,10 +50,108 @@ public class TypeConversions {
     static final String LogTag = TypeConversions.class.getSimpleName();
     static Map<Context,TypeConversions> InstancesByContext = new HashMap<Context,TypeConversions>();
 
+    /** Standard representation IDs. */
+    public static final int StringRepresentation    = 0;
+    public static final int NumberRepresentation    = 1;
+    public static final int BooleanRepresentation   = 2;
+    public static final int DateRepresentation      = 3;
+    public static final int URLRepresentation       = 4;
+    public static final int DataRepresentation      = 5;
+    public static final int ImageRepresentation     = 6;
+    public static final int JSONDataRepresentation  = 7;
+    public static final int DefaultRepresentation   = 8;
+    /** The number of standard representations. */
+    public static final int StandardRepresentationCount = 9;
+    /** The ID returned for unrecognized representation names. */
+    public static final int UnknownRepresentation   = -1;
+
+    /**
+     * The class of value returned by each standard representation, indexed by representation ID.
+     * Values which are already of the required class are returned unchanged by the standard
+     * converters; null entries indicate representations which always perform a conversion.
+     */
+    static final Class<?>[] StandardRepresentationClasses = new Class<?>[]{
+        String.class, Number.class, Boolean.class, Date.class, null, byte[].class, null, null, Object.class
+    };
+
+    /**
+     * Representation IDs keyed by representation name.
+     * Contains the lower-case name of each registered representation, and any other forms of
+     * each name which have been looked up.
+     */
+    static final Map<String,Integer> RepresentationIDs = new ConcurrentHashMap<>();
+    /** The number of registered representations. */
+    static volatile int RepresentationCount = 0;
+
+    static {
+        registerRepresentation("string");
+        registerRepresentation("number");
+        registerRepresentation("boolean");
+        registerRepresentation("date");
+        registerRepresentation("url");
+        registerRepresentation("data");
+        registerRepresentation("image");
+        registerRepresentation("jsondata");
+        registerRepresentation("default");
+        RepresentationIDs.put("json", JSONDataRepresentation );
+    }
+
+    /** A function for converting values to a representation. */
+    public interface Converter {
+        /**
+         * Convert a value.
+         * @param value A non-null value.
+         * @return The converted value, or null if the value can't be converted.
+         */
+        Object convert(Object value);
+    }
+
+    /** A converter which returns its value unchanged. */
+    static final Converter IdentityConverter = new Converter() {
+        @Override
+        public Object convert(Object value) {
+            return value;
+        }
+    };
+
     private Context context;
     private Resources r;
     /** A regex pattern for matching the start of a JSON document. */
     private Regex jsonRegex = new Regex("^\\s*([{\\[\"\\d]|true|false)");
+    /** The standard converters, indexed by representation ID. */
+    private final Converter[] standardConverters = makeStandardConverters();
+    /** Custom converters registered with this instance. */
+    private final Map<ConverterKey,Converter> customConverters = new ConcurrentHashMap<>();
+    /**
+     * Resolved converters, keyed by source class, with each class' converters indexed by
+     * representation ID. Null entries are resolved when first needed.
+     */
+    private final Map<Class<?>,Converter[]> convertersByClass = new ConcurrentHashMap<>();
+
+    /** A key identifying a custom converter. */
+    static final class ConverterKey {
+        final Class<?> sourceClass;
+        final int representation;
+
+        ConverterKey(Class<?> sourceClass, int representation) {
+            this.sourceClass = sourceClass;
+            this.representation = representation;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sourceClass.hashCode() + representation;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if( !(obj instanceof ConverterKey) ) {
+                return false;
+            }
+            ConverterKey key = (ConverterKey)obj;
+            return sourceClass == key.sourceClass && representation == key.representation;
+        }
+    }
 
     public TypeConversions() {}
 
@@ -100,6 +204,9 @@ public class TypeConversions {
     /**
      * Convert value to a number:
      *  Number -> Number
+     *  #RRGGBB -> Integer (colour value)
+     *  Integer string -> Long
+     *  Decimal string -> Double
      *  * -> null
      */
     public Number asNumber(Object value) {
@@ -116,14 +223,176 @@ public class TypeConversions {
             if( strValue.startsWith("#") ) {
                 result = Color.parseColor( strValue );
             }
+            else if( isInteger( strValue ) ) {
+                // Integer values are parsed exactly, so that they keep their full precision.
+                result = parseInteger( strValue );
+            }
             else try {
-                result = Float.parseFloat( strValue );
+                result = Double.parseDouble( strValue );
             }
             catch(NumberFormatException e) {}
         }
         return result;
     }
 
+    /**
+     * Convert value to a long.
+     * Performs the same conversions as asNumber(), but returns a primitive value. Numbers, and
+     * strings containing integer or colour values, are converted without allocating.
+     * @param value         The value to convert.
+     * @param defaultValue  The result to return if the value can't be converted to a number.
+     */
+    public long asLong(Object value, long defaultValue) {
+        if( value instanceof Number ) {
+            return ((Number)value).longValue();
+        }
+        if( value != null ) {
+            String strValue = value.toString();
+            if( strValue.startsWith("#") ) {
+                return Color.parseColor( strValue );
+            }
+            if( isInteger( strValue ) ) {
+                return parseInteger( strValue );
+            }
+            try {
+                return (long)Double.parseDouble( strValue );
+            }
+            catch(NumberFormatException e) {}
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Convert value to an int.
+     * @see #asLong(Object, long)
+     */
+    public int asInt(Object value, int defaultValue) {
+        if( value instanceof Number ) {
+            return ((Number)value).intValue();
+        }
+        return (int)asLong( value, defaultValue );
+    }
+
+    /**
+     * Convert value to a double.
+     * Performs the same conversions as asNumber(), but returns a primitive value. Numbers, and
+     * strings containing integer or colour values, are converted without allocating.
+     * @param value         The value to convert.
+     * @param defaultValue  The result to return if the value can't be converted to a number.
+     */
+    public double asDouble(Object value, double defaultValue) {
+        if( value instanceof Number ) {
+            return ((Number)value).doubleValue();
+        }
+        if( value != null ) {
+            String strValue = value.toString();
+            if( strValue.startsWith("#") ) {
+                return Color.parseColor( strValue );
+            }
+            if( isInteger( strValue ) ) {
+                return parseInteger( strValue );
+            }
+            try {
+                return Double.parseDouble( strValue );
+            }
+            catch(NumberFormatException e) {}
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Convert value to a float.
+     * @see #asDouble(Object, double)
+     */
+    public float asFloat(Object value, float defaultValue) {
+        if( value instanceof Number ) {
+            return ((Number)value).floatValue();
+        }
+        return (float)asDouble( value, defaultValue );
+    }
+
+    /**
+     * Convert value to a boolean.
+     * Performs the same conversions as asBoolean(), but returns a primitive value.
+     * @param value         The value to convert.
+     * @param defaultValue  The result to return if the value can't be converted to a boolean.
+     */
+    public boolean asBool(Object value, boolean defaultValue) {
+        if( value instanceof Boolean ) {
+            return (Boolean)value;
+        }
+        if( value instanceof Number ) {
+            // Any non-zero integer value evaluates to true.
+            return ((Number)value).intValue() != 0;
+        }
+        if( value != null ) {
+            double dvalue = asDouble( value, Double.NaN );
+            if( !Double.isNaN( dvalue ) ) {
+                return (int)dvalue != 0;
+            }
+        }
+        return defaultValue;
+    }
+
+    /** The maximum number of digits in an integer string which can be parsed without overflow. */
+    static final int MaxIntegerDigits = 18;
+
+    /**
+     * Test whether a string contains an integer value.
+     * Matches an optionally signed sequence of up to MaxIntegerDigits digits, optionally
+     * surrounded by whitespace.
+     */
+    static boolean isInteger(String s) {
+        int end = s.length();
+        while( end > 0 && s.charAt( end - 1 ) <= ' ' ) {
+            end--;
+        }
+        int pos = 0;
+        while( pos < end && s.charAt( pos ) <= ' ' ) {
+            pos++;
+        }
+        if( pos < end && (s.charAt( pos ) == '-' || s.charAt( pos ) == '+') ) {
+            pos++;
+        }
+        int digits = end - pos;
+        if( digits < 1 || digits > MaxIntegerDigits ) {
+            return false;
+        }
+        for( ; pos < end; pos++ ) {
+            char ch = s.charAt( pos );
+            if( ch < '0' || ch > '9' ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse an integer string.
+     * The string must have been tested using isInteger().
+     */
+    static long parseInteger(String s) {
+        int pos = 0;
+        while( s.charAt( pos ) <= ' ' ) {
+            pos++;
+        }
+        boolean negative = false;
+        char ch = s.charAt( pos );
+        if( ch == '-' || ch == '+' ) {
+            negative = (ch == '-');
+            pos++;
+        }
+        long result = 0;
+        for( int end = s.length(); pos < end; pos++ ) {
+            ch = s.charAt( pos );
+            if( ch < '0' || ch > '9' ) {
+                break;
+            }
+            result = result * 10 + (ch - '0');
+        }
+        return negative ? -result : result;
+    }
+
     /**
      * Convert value to a boolean:
      *  Number -> Boolean
@@ -320,36 +589,206 @@ public class TypeConversions {
      * - image
      * - json
      * - default (returns the unchanged value).
+     * Plus the names of any representations registered by the app. Names are case insensitive.
      */
     public Object asRepresentation(Object value, String name) {
-        name = name.toLowerCase();
-        if( "string".equals( name ) ) {
-            return asString( value );
+        return asRepresentation( value, getRepresentation( name ) );
+    }
+
+    /**
+     * Convert to a representation.
+     * @param value             The value to convert.
+     * @param representation    A representation ID.
+     * @return The converted value; or null if the value can't be converted, or if the
+     * representation isn't recognized.
+     */
+    public Object asRepresentation(Object value, int representation) {
+        if( value == null ) {
+            return null;
         }
-        if( "number".equals( name ) ) {
-            return asNumber( value );
+        Converter converter = getConverter( value.getClass(), representation );
+        return converter != null ? converter.convert( value ) : null;
+    }
+
+    /**
+     * Get the converter for converting values of a class to a representation.
+     * Custom converters registered for the class, or for its nearest superclass or interface,
+     * take precedence over the standard converters.
+     * @param sourceClass       The class of value to convert.
+     * @param representation    A representation ID.
+     * @return A converter, or null if no converter is available.
+     */
+    public Converter getConverter(Class<?> sourceClass, int representation) {
+        if( representation < 0 ) {
+            return null;
+        }
+        Converter[] converters = convertersByClass.get( sourceClass );
+        if( converters == null || converters.length <= representation ) {
+            // Note that the table's size reflects the number of representations registered at
+            // the time it was created.
+            Converter[] resized = new Converter[Math.max( RepresentationCount, representation + 1 )];
+            if( converters != null ) {
+                System.arraycopy( converters, 0, resized, 0, converters.length );
+            }
+            converters = resized;
+            convertersByClass.put( sourceClass, converters );
         }
-        if( "boolean".equals( name ) ) {
-            return asBoolean( value );
+        Converter converter = converters[representation];
+        if( converter == null ) {
+            converter = resolveConverter( sourceClass, representation );
+            converters[representation] = converter;
         }
-        if( "date".equals( name ) ) {
-            return asDate( value );
+        return converter == NullConverter ? null : converter;
+    }
+
+    /**
+     * Register a custom converter.
+     * The converter is used to convert values of the specified class, and of any of its
+     * subclasses, to the named representation. The representation name is registered if it
+     * isn't already recognized. Custom converters can be used to convert configuration values
+     * to app specific types, e.g. typed model objects.
+     * @param sourceClass       The class of value converted by the converter.
+     * @param representation    The name of the representation the converter produces.
+     * @param converter         The converter.
+     */
+    public void registerConverter(Class<?> sourceClass, String representation, Converter converter) {
+        int id = registerRepresentation( representation );
+        customConverters.put( new ConverterKey( sourceClass, id ), converter );
+        // Discard all resolved converters, as the new converter may apply to any subclass.
+        convertersByClass.clear();
+    }
+
+    /** A placeholder for class and representation combinations without a converter. */
+    private static final Converter NullConverter = new Converter() {
+        @Override
+        public Object convert(Object value) {
+            return null;
         }
-        if( "url".equals( name ) ) {
-            return asURL( value );
+    };
+
+    /** Resolve the converter for converting values of a class to a representation. */
+    private Converter resolveConverter(Class<?> sourceClass, int representation) {
+        // Search the class hierarchy for a custom converter.
+        if( !customConverters.isEmpty() ) {
+            for( Class<?> type = sourceClass; type != null; type = type.getSuperclass() ) {
+                Converter converter = findCustomConverter( type, representation );
+                if( converter != null ) {
+                    return converter;
+                }
+            }
         }
-        if( "data".equals( name ) ) {
-            return asData( value );
+        if( representation < StandardRepresentationCount ) {
+            Class<?> representationClass = StandardRepresentationClasses[representation];
+            if( representationClass != null && representationClass.isAssignableFrom( sourceClass ) ) {
+                return IdentityConverter;
+            }
+            return standardConverters[representation];
         }
-        if( "image".equals( name ) ) {
-            return asImage( value );
+        return NullConverter;
+    }
+
+    /** Find a custom converter registered for a class or any of its interfaces. */
+    private Converter findCustomConverter(Class<?> type, int representation) {
+        Converter converter = customConverters.get( new ConverterKey( type, representation ) );
+        if( converter == null ) {
+            for( Class<?> iface : type.getInterfaces() ) {
+                converter = findCustomConverter( iface, representation );
+                if( converter != null ) {
+                    break;
+                }
+            }
         }
-        if( "jsondata".equals( name ) || "json".equals( name ) ) {
-            return asJSONData( value );
+        return converter;
+    }
+
+    /** Make the standard converters, indexed by representation ID. */
+    private Converter[] makeStandardConverters() {
+        Converter[] converters = new Converter[StandardRepresentationCount];
+        converters[StringRepresentation] = new Converter() {
+            @Override
+            public Object convert(Object value) {
+                return asString( value );
+            }
+        };
+        converters[NumberRepresentation] = new Converter() {
+            @Override
+            public Object convert(Object value) {
+                return asNumber( value );
+            }
+        };
+        converters[BooleanRepresentation] = new Converter() {
+            @Override
+            public Object convert(Object value) {
+                return asBoolean( value );
+            }
+        };
+        converters[DateRepresentation] = new Converter() {
+            @Override
+            public Object convert(Object value) {
+                return asDate( value );
+            }
+        };
+        converters[URLRepresentation] = new Converter() {
+            @Override
+            public Object convert(Object value) {
+                return asURL( value );
+            }
+        };
+        converters[DataRepresentation] = new Converter() {
+            @Override
+            public Object convert(Object value) {
+                return asData( value );
+            }
+        };
+        converters[ImageRepresentation] = new Converter() {
+            @Override
+            public Object convert(Object value) {
+                return asImage( value );
+            }
+        };
+        converters[JSONDataRepresentation] = new Converter() {
+            @Override
+            public Object convert(Object value) {
+                return asJSONData( value );
+            }
+        };
+        converters[DefaultRepresentation] = IdentityConverter;
+        return converters;
+    }
+
+    /**
+     * Get the ID of a named representation.
+     * @param name  A representation name; case insensitive.
+     * @return The representation ID, or UnknownRepresentation if the name isn't recognized.
+     */
+    public static int getRepresentation(String name) {
+        if( name == null ) {
+            return UnknownRepresentation;
+        }
+        Integer id = RepresentationIDs.get( name );
+        if( id == null ) {
+            id = RepresentationIDs.get( name.toLowerCase() );
+            if( id == null ) {
+                return UnknownRepresentation;
+            }
+            // Remember this form of the name, so that it doesn't need to be lower-cased again.
+            RepresentationIDs.put( name, id );
         }
-        if( "default".equals( name ) ) {
-            return value;
+        return id;
+    }
+
+    /**
+     * Register a representation name.
+     * @param name  A representation name; case insensitive.
+     * @return The representation's ID. If the name is already registered then its existing ID
+     * is returned.
+     */
+    public static synchronized int registerRepresentation(String name) {
+        int id = getRepresentation( name );
+        if( id == UnknownRepresentation ) {
+            id = RepresentationCount++;
+            RepresentationIDs.put( name.toLowerCase(), id );
         }
-        return null;
+        return id;
     }
 }